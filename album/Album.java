@@ -1,49 +1,141 @@
 package album;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
 /**
  * Class description here.
  *
  * @author Yunus Ulusoy
  */
 public class Album {
+    private static final Ratings NO_RATINGS = new Ratings(new long[5]);
+    private static final VarHandle RATINGS;
+    private static final VarHandle UNPLACED;
+    static {
+        try {
+            RATINGS = MethodHandles.lookup().findVarHandle(Album.class, "ratings", Ratings.class);
+            UNPLACED = MethodHandles.lookup().findVarHandle(Album.class, "unplaced", boolean.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+    private static volatile DecimalSeparator decimalSeparator =
+            new DecimalSeparator(Locale.getDefault(Locale.Category.FORMAT));
 
     private String title;
     private Artist artist;
     private Genre genre;
     private Date released;
-    private Rating ratings; // Head of the linked list of ratings
+    private volatile Ratings ratings; // Never changed once published
+    private volatile boolean unplaced; // Rated since its collection last placed it in the rating order
+    private double placedAverage = Double.NaN; // Average it is placed under in the rating order, NaN if in none
 
     public Album(String title, Artist artist, Genre genre, Date released) {
         this.title = title;
         this.artist = artist;
         this.genre = genre;
         this.released = released;
-        this.ratings = null; // Initially, there are no ratings
+        this.ratings = NO_RATINGS; // Initially, there are no ratings
     }
 
-    // Add a rating to the linked list
-    public void rate(int star) {
+    // Add a rating to the star counters; safe to call from many threads at once without locking.
+    // The counters are replaced by an updated copy in one compare-and-set, so no vote is lost and
+    // every reader sees the histogram of some prefix of the votes. Only Collection rates an album
+    // it holds, as the change moves the album in the rating order. The epoch is the collection's
+    // current one, which never goes down; the counters as they stood before it are kept for copyAsOf
+    void rate(int star, long epoch) {
         if (star < 1 || star > 5) {
             throw new IllegalArgumentException("Invalid rating. Rating scale is 1 to 5.");
         }
-        Rating newRating = new Rating(star);
-        // Add the new rating to the head of the list
-        newRating.next = ratings;
-        ratings = newRating;
+        Ratings current;
+        Ratings rated;
+        do {
+            current = ratings;
+            long[] counts = current.counts.clone();
+            counts[star - 1]++;
+            rated = new Ratings(counts, epoch, current.epoch == epoch ? current.before : current.counts);
+        } while (!RATINGS.compareAndSet(this, current, rated));
+    }
+
+    // Flag the album as rated since it was last placed in the rating order.
+    // True for the one caller that raised the flag, which queues the album to be placed again
+    boolean markUnplaced() {
+        return UNPLACED.compareAndSet(this, false, true);
+    }
+
+    // Lower the flag before reading the ratings to place the album, so a vote counted later raises it again
+    void clearUnplaced() {
+        unplaced = false;
+    }
+
+    // Average the album is placed under in the rating order of its collection, NaN while it is in none.
+    // Only read and written by Collection while holding the album's monitor
+    double placedAverage() {
+        return placedAverage;
     }
 
-    // Compute the average rating by traversing the linked list
+    // Record the average the album was placed under, or NaN once it leaves the rating order
+    void placeAt(double average) {
+        placedAverage = average;
+    }
+
+    // Compute the average rating from one read of the star counters.
+    // Sum and count come from the same histogram, so the average always matches one of cast votes
     public double avgRatings() {
-        int sum = 0, count = 0;
-        Rating current = ratings;
-        while (current != null) {
-            sum += current.star;
-            count++;
-            current = current.next;
+        long[] counts = ratings.counts;
+        long sum = 0;
+        long count = 0;
+        for (int i = 0; i < counts.length; i++) {
+            sum += (i + 1) * counts[i];
+            count += counts[i];
         }
         return count > 0 ? (double) sum / count : 0;
     }
 
+    // Number of ratings with the given number of stars
+    public int getStarCount(int star) {
+        if (star < 1 || star > 5) {
+            throw new IllegalArgumentException("Invalid rating. Rating scale is 1 to 5.");
+        }
+        return (int) ratings.counts[star - 1];
+    }
+
+    // Total number of ratings
+    public int getRatingCount() {
+        long count = 0;
+        for (long stars : ratings.counts) {
+            count += stars;
+        }
+        return (int) count;
+    }
+
+    // Replace the star counters, e.g. when reloading a saved collection; index 0 holds 1 star counts.
+    // Only for albums no other thread is rating yet, as votes cast meanwhile are lost
+    void restoreRatings(int[] counts) {
+        long[] restored = new long[NO_RATINGS.counts.length];
+        for (int i = 0; i < restored.length; i++) {
+            restored[i] = counts[i];
+        }
+        ratings = new Ratings(restored);
+    }
+
+    // Detached copy with the same fields and star counters
+    Album copy() {
+        return copyAsOf(Long.MAX_VALUE);
+    }
+
+    // Detached copy with the star counters as they stood at the end of an epoch.
+    // Exact while no vote of a later epoch than the next one has been cast
+    Album copyAsOf(long epoch) {
+        Ratings current = ratings;
+        Album copy = new Album(title, artist, genre, released);
+        copy.ratings = new Ratings(current.epoch <= epoch ? current.counts : current.before);
+        return copy;
+    }
+
     // Override equals() method (case-insensitive title comparison)
     @Override
     public boolean equals(Object obj) {
@@ -53,78 +145,106 @@ public class Album {
         return title.equalsIgnoreCase(album.title) && artist.equals(album.artist);
     }
 
+    // Same as equals() against an album with this title and artist name, without building one
+    boolean hasKey(String title, String artistName) {
+        return this.title.equalsIgnoreCase(title) && artist.getName().equalsIgnoreCase(artistName);
+    }
+
+    // Override hashCode() consistently with equals() (case-insensitive title and artist name)
+    @Override
+    public int hashCode() {
+        return hashOf(title, artist.getName());
+    }
+
+    // hashCode() of an album with this title and artist name, without building one
+    static int hashOf(String title, String artistName) {
+        return 31 * Artist.hashIgnoreCase(title) + Artist.hashIgnoreCase(artistName);
+    }
+
     // Override toString() method with detailed album information and star representation
     @Override
     public String toString() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("[")
-                .append(title)
-                .append("] Released ").append(released)
-                .append(" [").append(artist)
-                .append("] [").append(genre)
-                .append("] Rating: ");
-
-        if (ratings == null) {
-            sb.append("none");
-        } else {
-            // Count occurrences of each rating value
-            int[] ratingCounts = new int[6]; // Initialize all counts to 0
-            Rating current = ratings;
-            while (current != null) {
-                ratingCounts[current.star]++;
-                current = current.next;
-            }
+        return appendTo(new StringBuilder()).toString();
+    }
 
-            // Build the star representation (e.g., *(2) for 2 one-star ratings)
-            for (int star = 1; star <= 5; star++) {
-                if (ratingCounts[star] > 0) {
-                    sb.append(repeat())
-                            .append("(").append(star).append(") ");
-                }
-            }
+    // Append the same text as toString() to the buffer, without building intermediate strings
+    public StringBuilder appendTo(StringBuilder sb) {
+        sb.append('[').append(title).append("] Released ");
+        released.appendTo(sb);
+        sb.append(" [").append(artist.getName()).append(':');
+        artist.getBorn().appendTo(sb);
+        sb.append("] [").append(genre).append("] ");
+        return appendRatings(sb);
+    }
 
-            // Calculate and append the average rating
-            sb.append("(average rating: ").append(avgRatings()).append(")");
+    // Append the star representation, e.g. Rating: *(0)**(2)***(0)****(1)*****(0) (average rating: 3.33)
+    private StringBuilder appendRatings(StringBuilder sb) {
+        // One read of the counters, so the printed counts and average agree under concurrent rating
+        long[] counts = ratings.counts;
+        long ratingSum = 0;
+        long ratingCount = 0;
+        for (int i = 0; i < counts.length; i++) {
+            ratingSum += (i + 1) * counts[i];
+            ratingCount += counts[i];
         }
-        return String.format("[%s] Released %s [%s:%s] [%s] %s",
-                title, released, artist.getName(), artist.getBorn(), genre, repeat());
-
+        if (ratingCount == 0) {
+            return sb.append("Rating: none");
+        }
+        sb.append("Rating: ");
+        for (int i = 0; i < counts.length; i++) {
+            for (int star = 0; star <= i; star++) {
+                sb.append('*');
+            }
+            sb.append('(').append(counts[i]).append(')');
+        }
+        // Average rounded half up to two decimals, computed exactly from the integer sum and count
+        long hundredths = (200L * ratingSum + ratingCount) / (2L * ratingCount);
+        sb.append(" (average rating: ").append(hundredths / 100).append(decimalSeparator());
+        long fraction = hundredths % 100;
+        if (fraction < 10) {
+            sb.append('0');
+        }
+        return sb.append(fraction).append(')');
     }
 
-    // Helper method to repeat a string a certain number of times
-    private String repeat() {
-        // Initialize an array to count the occurrences of each rating from 1 to 5
-        if (ratings == null) {
-            return "Rating: none";
+    // Decimal separator of the default format locale, as String.format("%.2f") uses
+    private static char decimalSeparator() {
+        Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+        DecimalSeparator cached = decimalSeparator;
+        if (!cached.locale.equals(locale)) {
+            // Looked up again only when the default locale changes
+            cached = new DecimalSeparator(locale);
+            decimalSeparator = cached;
         }
-        int[] ratingCounts = new int[5]; // Index 0 for 1 star, index 4 for 5 stars
+        return cached.separator;
+    }
 
-        // Traverse the linked list to count the occurrences
-        Rating current = ratings;
-        while (current != null) {
-            if (current.getStar() >= 1 && current.getStar() <= 5) {
-                ratingCounts[current.getStar() - 1]++; // Increment the count for the respective star rating
-            }
-            current = current.getNext();
-        }
+    // Star counters as of the latest vote, with the epoch it was cast in and the counters before that epoch
+    private static final class Ratings {
+        final long[] counts; // Index 0 for 1 star, index 4 for 5 stars
+        final long epoch;
+        final long[] before;
 
-        // Construct the string representation using asterisks and counts, including zeros
-        StringBuilder ratingStr = new StringBuilder("Rating: ");
-        for (int i = 0; i < ratingCounts.length; i++) {
-            // Use the repeat method to construct the asterisks string, including ratings that occur zero times
-            ratingStr.append(String.format("%s(%d)", "*".repeat(i + 1), ratingCounts[i]));
+        Ratings(long[] counts) {
+            this(counts, 0, counts);
         }
 
-        // Append average rating if there are any ratings; otherwise, just indicate "none"
-        if (ratings != null) {
-            double averageRating = avgRatings();
-            ratingStr.append(String.format(" (average rating: %.2f)", averageRating));
-        } else {
-            ratingStr.append(" none");
+        Ratings(long[] counts, long epoch, long[] before) {
+            this.counts = counts;
+            this.epoch = epoch;
+            this.before = before;
         }
+    }
 
-        return ratingStr.toString();
+    // A locale with its decimal separator
+    private static final class DecimalSeparator {
+        final Locale locale;
+        final char separator;
 
+        DecimalSeparator(Locale locale) {
+            this.locale = locale;
+            this.separator = DecimalFormatSymbols.getInstance(locale).getDecimalSeparator();
+        }
     }
 
     public Date getReleased() {
@@ -0,0 +1,200 @@
+package album;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hash index over the albums of a collection, keyed by album identity
+ * (case-insensitive title plus artist name). It holds the stored albums
+ * themselves, so the collection needs no separate backing array. Lookups
+ * take the key strings directly, so callers need not build a probe album.
+ * <p>
+ * The index is split into lock stripes by hash. Lookups take no lock:
+ * chains are immutable once published, so a reader always sees either the
+ * old or the new chain of a bucket. Changes to an album's entry must be
+ * made while holding that album's stripe, obtained from lockFor.
+ */
+class AlbumIndex {
+    private static final int STRIPES = 64;
+    private static final int STRIPE_SHIFT = 26; // top 6 hash bits pick the stripe
+    private static final int INITIAL_BUCKETS = 4;
+    private final Stripe[] stripes;
+    /**
+     * Constructor for AlbumIndex class.
+     */
+    AlbumIndex() {
+        stripes = new Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+    /**
+     * Finds the stored album equal to the specified album, without locking.
+     *
+     * @param album The album to look up.
+     * @return Stored album if indexed, else null.
+     */
+    Album get(Album album) {
+        return get(album.getTitle(), album.getArtist().getName());
+    }
+    /**
+     * Finds the stored album with a title and artist name, ignoring case, without locking.
+     *
+     * @param title      Title of the album.
+     * @param artistName Name of the artist.
+     * @return Stored album if indexed, else null.
+     */
+    Album get(String title, String artistName) {
+        int hash = spread(Album.hashOf(title, artistName));
+        return stripeOf(hash).get(title, artistName, hash);
+    }
+    /**
+     * Returns the lock guarding an album's entry; changes to the album must hold it.
+     *
+     * @param album The album about to be changed.
+     * @return Lock of the album's stripe.
+     */
+    ReentrantLock lockFor(Album album) {
+        return stripeOf(spread(album.hashCode()));
+    }
+    /**
+     * Returns the lock guarding the entry of the album with a title and artist name.
+     *
+     * @param title      Title of the album.
+     * @param artistName Name of the artist.
+     * @return Lock of the album's stripe.
+     */
+    ReentrantLock lockFor(String title, String artistName) {
+        return stripeOf(spread(Album.hashOf(title, artistName)));
+    }
+    /**
+     * Indexes an album unless an equal album is already indexed.
+     * The caller holds the album's stripe.
+     *
+     * @param album Album to index.
+     * @return True if the album was indexed, false if an equal one already is.
+     */
+    boolean put(Album album) {
+        int hash = spread(album.hashCode());
+        return stripeOf(hash).put(album, hash);
+    }
+    /**
+     * Removes the album with a title and artist name from the index.
+     * The caller holds the album's stripe.
+     *
+     * @param title      Title of the album.
+     * @param artistName Name of the artist.
+     * @return The removed stored album, or null if it was not indexed.
+     */
+    Album remove(String title, String artistName) {
+        int hash = spread(Album.hashOf(title, artistName));
+        return stripeOf(hash).remove(title, artistName, hash);
+    }
+    /**
+     * Acquires every stripe, in order, so that no album can change until unlockAll.
+     */
+    void lockAll() {
+        for (Stripe stripe : stripes) {
+            stripe.lock();
+        }
+    }
+    /**
+     * Releases every stripe acquired by lockAll.
+     */
+    void unlockAll() {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            stripes[i].unlock();
+        }
+    }
+    private Stripe stripeOf(int hash) {
+        return stripes[hash >>> STRIPE_SHIFT];
+    }
+    private static int spread(int hash) {
+        int mixed = hash * 0x9E3779B9; // scatter into the top bits that pick the stripe
+        return mixed ^ (mixed >>> 16); // and fold them back into the bucket bits
+    }
+    /**
+     * One lock stripe, owning its own bucket table.
+     */
+    @SuppressWarnings("serial")
+    private static class Stripe extends ReentrantLock {
+        private volatile AtomicReferenceArray<Entry> buckets = new AtomicReferenceArray<>(INITIAL_BUCKETS);
+        private int size;
+
+        Album get(String title, String artistName, int hash) {
+            AtomicReferenceArray<Entry> table = buckets;
+            Entry current = table.get(hash & (table.length() - 1));
+            while (current != null) {
+                if (current.hash == hash && current.album.hasKey(title, artistName)) {
+                    return current.album;
+                }
+                current = current.next;
+            }
+            return null;
+        }
+
+        boolean put(Album album, int hash) {
+            if (get(album.getTitle(), album.getArtist().getName(), hash) != null) {
+                return false;
+            }
+            AtomicReferenceArray<Entry> table = buckets;
+            if (size >= table.length() - (table.length() >> 2)) {
+                table = rehash(table);
+            }
+            int bucket = hash & (table.length() - 1);
+            table.set(bucket, new Entry(album, hash, table.get(bucket)));
+            size++;
+            return true;
+        }
+
+        Album remove(String title, String artistName, int hash) {
+            AtomicReferenceArray<Entry> table = buckets;
+            int bucket = hash & (table.length() - 1);
+            Entry head = table.get(bucket);
+            Entry current = head;
+            while (current != null) {
+                if (current.hash == hash && current.album.hasKey(title, artistName)) {
+                    // Entries are immutable: copy the ones ahead of the removed entry
+                    Entry rest = current.next;
+                    for (Entry e = head; e != current; e = e.next) {
+                        rest = new Entry(e.album, e.hash, rest);
+                    }
+                    table.set(bucket, rest);
+                    size--;
+                    return current.album;
+                }
+                current = current.next;
+            }
+            return null;
+        }
+
+        /**
+         * Builds a table twice the size and publishes it once it is complete.
+         */
+        private AtomicReferenceArray<Entry> rehash(AtomicReferenceArray<Entry> table) {
+            AtomicReferenceArray<Entry> arrayNew = new AtomicReferenceArray<>(table.length() << 1);
+            for (int i = 0; i < table.length(); i++) {
+                for (Entry e = table.get(i); e != null; e = e.next) {
+                    int bucket = e.hash & (arrayNew.length() - 1);
+                    arrayNew.set(bucket, new Entry(e.album, e.hash, arrayNew.get(bucket)));
+                }
+            }
+            buckets = arrayNew;
+            return arrayNew;
+        }
+    }
+    /**
+     * Immutable chained entry of the index.
+     */
+    private static class Entry {
+        final Album album;
+        final int hash;
+        final Entry next;
+
+        Entry(Album album, int hash, Entry next) {
+            this.album = album;
+            this.hash = hash;
+            this.next = next;
+        }
+    }
+}
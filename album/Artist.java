@@ -74,6 +74,29 @@ public class Artist implements Comparable<Artist> {
         Artist other = (Artist) a;
         return name.equalsIgnoreCase(other.name);
     }
+    /**
+     * Returns hash code of artist, consistent with equals.
+     *
+     * @return Case-insensitive hash of the artist's name.
+     */
+    @Override
+    public int hashCode() {
+        return hashIgnoreCase(name);
+    }
+    /**
+     * Computes a hash of a string that agrees with equalsIgnoreCase,
+     * without allocating a lowercase copy.
+     *
+     * @param s String to hash.
+     * @return Hash that is equal for strings equal ignoring case.
+     */
+    static int hashIgnoreCase(String s) {
+        int hash = 0;
+        for (int i = 0; i < s.length(); i++) {
+            hash = 31 * hash + Character.toLowerCase(Character.toUpperCase(s.charAt(i)));
+        }
+        return hash;
+    }
     /**
      * Returns string representation of artist.
      *
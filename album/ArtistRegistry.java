@@ -0,0 +1,143 @@
+package album;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Canonical artists of a collection, one shared Artist per name (ignoring
+ * case, as Artist.equals does) and date of birth, so albums of the same
+ * artist share one instance instead of each holding a copy. Lookups take
+ * the name and date directly and take no lock; registering a new artist
+ * briefly locks the registry. Artists are held weakly: once no album refers
+ * to an artist, the garbage collector may free it, and its entry is dropped
+ * on the next registration.
+ */
+class ArtistRegistry {
+    private static final int INITIAL_BUCKETS = 64;
+    private volatile AtomicReferenceArray<Entry> buckets;
+    private final ReferenceQueue<Artist> cleared;
+    private int size;
+    /**
+     * Constructor for ArtistRegistry class.
+     */
+    ArtistRegistry() {
+        buckets = new AtomicReferenceArray<>(INITIAL_BUCKETS);
+        cleared = new ReferenceQueue<>();
+        size = 0;
+    }
+    /**
+     * Returns the canonical artist with a name and date of birth, registering one if there is none.
+     * A new Artist, with its lowercase copy of the name, is only built for an artist not seen before.
+     *
+     * @param name Name of the artist, in any case.
+     * @param born Date of birth of the artist.
+     * @return The shared artist.
+     */
+    Artist intern(String name, Date born) {
+        int hash = hash(name, born);
+        Artist found = find(buckets, name, born, hash);
+        if (found != null) {
+            return found;
+        }
+        return register(new Artist(name, born), hash);
+    }
+    /**
+     * Returns the canonical artist equal to an artist, registering the artist itself if there is none.
+     *
+     * @param artist Artist to look up.
+     * @return The shared artist.
+     */
+    Artist intern(Artist artist) {
+        int hash = hash(artist.getName(), artist.getBorn());
+        Artist found = find(buckets, artist.getName(), artist.getBorn(), hash);
+        return found != null ? found : register(artist, hash);
+    }
+    private synchronized Artist register(Artist artist, int hash) {
+        // Another thread may have registered it since the unlocked lookup
+        Artist found = find(buckets, artist.getName(), artist.getBorn(), hash);
+        if (found != null) {
+            return found;
+        }
+        AtomicReferenceArray<Entry> table = buckets;
+        for (Entry freed = (Entry) cleared.poll(); freed != null; freed = (Entry) cleared.poll()) {
+            purge(table, freed.hash);
+        }
+        if (size >= table.length() - (table.length() >> 2)) {
+            table = rehash(table);
+        }
+        int bucket = hash & (table.length() - 1);
+        table.set(bucket, new Entry(artist, hash, table.get(bucket), cleared));
+        size++;
+        return artist;
+    }
+    private static Artist find(AtomicReferenceArray<Entry> table, String name, Date born, int hash) {
+        Entry current = table.get(hash & (table.length() - 1));
+        while (current != null) {
+            Artist artist = current.get();
+            if (current.hash == hash && artist != null && artist.getBorn().compareTo(born) == 0
+                    && artist.getName().equalsIgnoreCase(name)) {
+                return artist;
+            }
+            current = current.next;
+        }
+        return null;
+    }
+    /**
+     * Unlinks the entries of freed artists from the bucket of a hash. Lookups
+     * running meanwhile still walk the chain, skipping the freed entries.
+     */
+    private void purge(AtomicReferenceArray<Entry> table, int hash) {
+        int bucket = hash & (table.length() - 1);
+        Entry previous = null;
+        for (Entry current = table.get(bucket); current != null; current = current.next) {
+            if (current.get() != null) {
+                previous = current;
+            } else {
+                if (previous == null) {
+                    table.set(bucket, current.next);
+                } else {
+                    previous.next = current.next;
+                }
+                size--;
+            }
+        }
+    }
+    private static int hash(String name, Date born) {
+        int hash = (31 * Artist.hashIgnoreCase(name) + born.pack()) * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+    /**
+     * Builds a table twice the size, without the freed artists, and publishes it once it is complete.
+     */
+    private AtomicReferenceArray<Entry> rehash(AtomicReferenceArray<Entry> table) {
+        AtomicReferenceArray<Entry> arrayNew = new AtomicReferenceArray<>(table.length() << 1);
+        size = 0;
+        for (int i = 0; i < table.length(); i++) {
+            for (Entry e = table.get(i); e != null; e = e.next) {
+                Artist artist = e.get();
+                if (artist != null) {
+                    int bucket = e.hash & (arrayNew.length() - 1);
+                    arrayNew.set(bucket, new Entry(artist, e.hash, arrayNew.get(bucket), cleared));
+                    size++;
+                }
+            }
+        }
+        buckets = arrayNew;
+        return arrayNew;
+    }
+    /**
+     * Chained entry of the registry, holding its artist weakly. Only the link
+     * to the next entry changes, when a freed entry is unlinked.
+     */
+    private static class Entry extends WeakReference<Artist> {
+        final int hash;
+        volatile Entry next;
+
+        Entry(Artist artist, int hash, Entry next, ReferenceQueue<Artist> queue) {
+            super(artist, queue);
+            this.hash = hash;
+            this.next = next;
+        }
+    }
+}
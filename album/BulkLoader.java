@@ -0,0 +1,114 @@
+package album;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a large command file through memory-mapped windows and hands it
+ * to a handler line by line. Each window is decoded once into a reused
+ * char buffer, and lines are passed as ranges of that buffer, so no
+ * String is built per line.
+ */
+class BulkLoader {
+    private static final int WINDOW = 1 << 23;
+    private static final int MAX_WINDOW = 1 << 30;
+    /**
+     * Receiver of the lines of a file.
+     */
+    interface LineHandler {
+        /**
+         * Handles one line, given without its line terminator.
+         *
+         * @param text Buffer holding the line; only valid during the call.
+         * @param from Index of the first character of the line.
+         * @param to   Index just past the last character of the line.
+         * @return True to continue with the next line, false to stop loading.
+         */
+        boolean line(CharSequence text, int from, int to);
+        /**
+         * Called after each mapped window of lines has been handled.
+         */
+        void endOfBatch();
+    }
+    private BulkLoader() {
+    }
+    /**
+     * Feeds every line of a UTF-8 file to the handler.
+     *
+     * @param file    File to load.
+     * @param handler Receiver of the lines.
+     * @throws IOException If the file cannot be read.
+     */
+    static void load(Path file, LineHandler handler) throws IOException {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            int window = WINDOW;
+            CharBuffer chars = CharBuffer.allocate(window);
+            while (position < size) {
+                int length = (int) Math.min(window, size - position);
+                MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                boolean last = position + length == size;
+                int cut = last ? length : lastNewLine(bytes, length);
+                if (cut < 0) {
+                    if (window < MAX_WINDOW) {
+                        // A single line longer than the window: retry with a bigger window
+                        window = (int) Math.min(MAX_WINDOW, 2L * window);
+                        chars = CharBuffer.allocate(window);
+                        continue;
+                    }
+                    cut = length;
+                }
+                bytes.limit(cut);
+                chars.clear();
+                decoder.reset();
+                decoder.decode(bytes, chars, true);
+                decoder.flush(chars);
+                chars.flip();
+                boolean more = feedLines(chars, handler);
+                handler.endOfBatch();
+                if (!more) {
+                    return;
+                }
+                position += cut;
+            }
+        }
+    }
+    /**
+     * Finds the end of the last complete line of a window.
+     *
+     * @return Index just past the last '\n', or -1 if the window holds none.
+     */
+    private static int lastNewLine(ByteBuffer bytes, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (bytes.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+    private static boolean feedLines(CharBuffer chars, LineHandler handler) {
+        int length = chars.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            if (chars.charAt(i) == '\n') {
+                if (!handler.line(chars, start, i)) {
+                    return false;
+                }
+                start = i + 1;
+            }
+        }
+        return start >= length || handler.line(chars, start, length);
+    }
+}
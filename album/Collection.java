@@ -1,45 +1,134 @@
 package album;
 
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
 /**
  * This class monitors and handles the creation of and addition to the album collection.
+ * <p>
+ * The collection is safe to share between threads. Changes to an album hold
+ * that album's lock stripe of the index, which keeps changes to one album in
+ * order while changes to other albums go ahead. The orders a change updates
+ * (PD, PG, PR, its genre, its artist's discography and the titles) take no
+ * lock: each change publishes a new version of an order with a
+ * compare-and-set, and a writer that collides with another on an order only
+ * copies its O(log n) path again, so writers never wait for each other
+ * there. A vote takes no lock: it counts itself on the album with a
+ * compare-and-set and queues the album, once until it is placed, to be moved
+ * in PR by the next reader of the rating order. With a log attached, every
+ * change is also appended to the log's queue, which is serialized, and a vote
+ * holds its album's stripe like any other change, so the log records it in
+ * the same order as a removal of the album. Lookups and listings take no lock:
+ * listings walk an immutable version of their order, so they never block a
+ * writer.
  *
  * @author Arush Bhardwaj
  */
 public class Collection {
-    private static final int CAPACITY = 4;
-    private static final int NOT_LOCATE = -1;
-    private Album[] albums;
-    private int size;
+    private static final int LISTING_CHUNK = 1 << 16;
+    private static final long LISTING_CACHE = Long.getLong("album.listingCache", 1L << 23); // Characters
+    private static final int SHORTEST_LINE = 56; // Fewest characters of an album line, separator included
+    /**
+     * Order of PD: release date, then title.
+     */
+    static final Comparator<Album> BY_DATE = (x, y) -> {
+        int dateCompare = x.getReleased().compareTo(y.getReleased());
+        if (dateCompare != 0) {
+            return dateCompare;
+        }
+        int titleCompare = x.getTitle().compareTo(y.getTitle());
+        if (titleCompare != 0) {
+            return titleCompare;
+        }
+        return x.getArtist().getName().compareTo(y.getArtist().getName());
+    };
+    /**
+     * Order of PG: genre, then artist name.
+     */
+    static final Comparator<Album> BY_GENRE = (x, y) -> {
+        int compareGenre = x.getGenre().toString().compareTo(y.getGenre().toString());
+        if (compareGenre != 0) {
+            return compareGenre;
+        }
+        int artistCompare = x.getArtist().getName().compareTo(y.getArtist().getName());
+        if (artistCompare != 0) {
+            return artistCompare;
+        }
+        return x.getTitle().compareTo(y.getTitle());
+    };
+    /**
+     * Order of PR: average rating from highest to lowest, then title. Albums
+     * are ordered by the average they had when placed, which stays put while
+     * other writers compare against it.
+     */
+    static final Comparator<RatedAlbum> BY_RATING = (x, y) -> {
+        int ratingCompare = Double.compare(y.average, x.average);
+        if (ratingCompare != 0) {
+            return ratingCompare;
+        }
+        return compareTitles(x.album, y.album);
+    };
+    private final AlbumIndex index;
+    private final ArtistRegistry artists;
+    private final OrderedIndex<Album> byDate;
+    private final OrderedIndex<Album> byGenre;
+    private final OrderedIndex<RatedAlbum> byRating;
+    private final ConcurrentLinkedQueue<Album> unplaced; // Albums rated since they were placed in PR
+    private volatile boolean placing; // A reader is moving the unplaced albums in PR
+    private final ConcurrentHashMap<Artist, OrderedIndex<Album>> byArtist; // Discographies, in date order
+    private final OrderedIndex<Album>[] byGenreOf; // Albums of each genre by ordinal, in PG order
+    private final SearchIndex search;
+    private final LongAdder[] versions; // Changes to the albums of each genre, by ordinal
+    private final ListingCache listings;
+    private volatile WriteAheadLog log; // Null unless mutations are being made durable
+    private volatile long epoch; // Cuts taken so far; every vote is stamped with the epoch it is cast in
     /**
      * Constructor for Collection class.
      */
     public Collection() {
-        albums = new Album[CAPACITY];
-        size = 0;
+        this(LISTING_CACHE);
     }
     /**
-     * Finds the index of specified album in the collection.
+     * Constructor for Collection class with a listing cache of a given size.
      *
-     * @param album The album to find.
-     * @return Index of the album if found, else NOT_LOCATE.
+     * @param listingCacheChars Characters of rendered listings to cache at most; 0 disables the cache.
      */
-    private int find(Album album) {
-        int i = 0;
-        while (i < size) {
-            if (albums[i].equals(album)) {
-                return i;
-            }
-            i++;
+    Collection(long listingCacheChars) {
+        index = new AlbumIndex();
+        artists = new ArtistRegistry();
+        byDate = new OrderedIndex<>(BY_DATE);
+        byGenre = new OrderedIndex<>(BY_GENRE);
+        byRating = new OrderedIndex<>(BY_RATING);
+        unplaced = new ConcurrentLinkedQueue<>();
+        byArtist = new ConcurrentHashMap<>();
+        byGenreOf = newGenreIndexes();
+        search = new SearchIndex();
+        versions = new LongAdder[Genre.values().length];
+        for (int i = 0; i < versions.length; i++) {
+            versions[i] = new LongAdder();
         }
-        return NOT_LOCATE;
+        listings = new ListingCache(listingCacheChars);
     }
-    /**
-     * Increases capacity of the collection.
-     */
-    private void grow() {
-        Album[] arrayNew = new Album[size + CAPACITY];
-        System.arraycopy(albums, 0, arrayNew, 0, size);
-        albums = arrayNew;
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static OrderedIndex<Album>[] newGenreIndexes() {
+        OrderedIndex<Album>[] indexes = new OrderedIndex[Genre.values().length];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = new OrderedIndex<>(BY_GENRE);
+        }
+        return indexes;
     }
     /**
      * Checks if collection has specified album.
@@ -48,7 +137,30 @@ public class Collection {
      * @return True if the collection contains the album, false otherwise.
      */
     public boolean contains(Album album) {
-        return find(album) != NOT_LOCATE;
+        return index.get(album) != null;
+    }
+    /**
+     * Checks if collection has the album with a title and artist name, ignoring case.
+     *
+     * @param title      Title of the album.
+     * @param artistName Name of the artist.
+     * @return True if the collection contains the album, false otherwise.
+     */
+    public boolean contains(String title, String artistName) {
+        return index.get(title, artistName) != null;
+    }
+    /**
+     * Returns the artist with a name and date of birth, shared by every album of
+     * the collection by that artist. Build new albums with it, so that prolific
+     * artists are stored once. The artist is held weakly, so looking one up for
+     * an album that is then not added leaves nothing behind.
+     *
+     * @param name Name of the artist, in any case.
+     * @param born Date of birth of the artist.
+     * @return The shared artist.
+     */
+    public Artist artist(String name, Date born) {
+        return artists.intern(name, born);
     }
     /**
      * Adds album to collection.
@@ -57,14 +169,42 @@ public class Collection {
      * @return True if the album was added, false if it is already in collection.
      */
     public boolean add(Album album) {
-        if (contains(album)) {
-            return false;
-        }
-        if (size == albums.length) {
-            grow();
+        ReentrantLock stripe = index.lockFor(album);
+        stripe.lock();
+        try {
+            if (index.get(album) != null) {
+                return false;
+            }
+            // Logged before the change, so a record the log refuses leaves the collection as it was
+            WriteAheadLog log = this.log;
+            if (log != null) {
+                log.logAdd(album);
+            }
+            index.put(album);
+            byDate.insert(album);
+            byGenre.insert(album);
+            synchronized (album) {
+                // A vote cast as soon as the album is indexed is placed after this, not before
+                RatedAlbum placed = new RatedAlbum(album);
+                byRating.insert(placed);
+                album.placeAt(placed.average);
+            }
+            byGenreOf[album.getGenre().ordinal()].insert(album);
+            byArtist.compute(album.getArtist(), (artist, discography) -> {
+                OrderedIndex<Album> albums = discography;
+                if (albums == null) {
+                    albums = new OrderedIndex<>(BY_DATE);
+                    search.addArtist(artist);
+                }
+                albums.insert(album);
+                return albums;
+            });
+            search.addAlbum(album);
+            versions[album.getGenre().ordinal()].increment();
+            return true;
+        } finally {
+            stripe.unlock();
         }
-        albums[size++] = album;
-        return true;
     }
     /**
      * Removes album from collection.
@@ -73,19 +213,50 @@ public class Collection {
      * @return True if the album was removed, false if it is not in the collection.
      */
     public boolean remove(Album album) {
-        int number = find(album);
-        if (number == NOT_LOCATE) {
-            return false;
-        }
-        // Shift left to fill gap
-        int i = number;
-        while (i < size - 1) {
-            albums[i] = albums[i + 1];
-            i++;
+        return remove(album.getTitle(), album.getArtist().getName());
+    }
+    /**
+     * Removes the album with a title and artist name, ignoring case, from collection.
+     *
+     * @param title      Title of the album.
+     * @param artistName Name of the artist.
+     * @return True if the album was removed, false if it is not in the collection.
+     */
+    public boolean remove(String title, String artistName) {
+        ReentrantLock stripe = index.lockFor(title, artistName);
+        stripe.lock();
+        try {
+            Album stored = index.get(title, artistName);
+            if (stored == null) {
+                return false;
+            }
+            WriteAheadLog log = this.log;
+            if (log != null) {
+                log.logRemove(stored);
+            }
+            index.remove(title, artistName);
+            byDate.remove(stored);
+            byGenre.remove(stored);
+            synchronized (stored) {
+                byRating.remove(new RatedAlbum(stored, stored.placedAverage()));
+                stored.placeAt(Double.NaN);
+            }
+            byGenreOf[stored.getGenre().ordinal()].remove(stored);
+            // Drop an artist's entry with their last album, atomically with respect to adds
+            byArtist.computeIfPresent(stored.getArtist(), (artist, discography) -> {
+                discography.remove(stored);
+                if (discography.size() > 0) {
+                    return discography;
+                }
+                search.removeArtist(artist);
+                return null;
+            });
+            search.removeAlbum(stored);
+            versions[stored.getGenre().ordinal()].increment();
+            return true;
+        } finally {
+            stripe.unlock();
         }
-        albums[size - 1] = null;
-        size--;
-        return true;
     }
     /**
      * Rates an album in collection.
@@ -94,80 +265,651 @@ public class Collection {
      * @param rating Rating to assign to the album.
      */
     public void rate(Album album, int rating) {
+        rate(album.getTitle(), album.getArtist().getName(), rating);
+    }
+    /**
+     * Rates the album with a title and artist name, ignoring case, in collection.
+     *
+     * @param title      Title of the album.
+     * @param artistName Name of the artist.
+     * @param rating     Rating to assign to the album.
+     */
+    public void rate(String title, String artistName, int rating) {
         if (rating < 1 || rating > 5) {
             throw new IllegalArgumentException("Invalid rating, rating scale is 1 to 5.");
         }
-        int number = find(album);
-        if (number == NOT_LOCATE) {
+        if (log == null) {
+            vote(find(title, artistName), rating);
+            return;
+        }
+        ReentrantLock stripe = index.lockFor(title, artistName);
+        stripe.lock();
+        try {
+            Album stored = find(title, artistName);
+            WriteAheadLog log = this.log;
+            if (log != null) {
+                log.logRate(stored, rating);
+            }
+            vote(stored, rating);
+        } finally {
+            stripe.unlock();
+        }
+    }
+    private Album find(String title, String artistName) {
+        Album stored = index.get(title, artistName);
+        if (stored == null) {
             throw new IllegalArgumentException("album.album.Album not found.");
         }
-        albums[number].rate(rating);
+        return stored;
+    }
+    /**
+     * Counts a vote and leaves moving the album in PR to the next reader of
+     * the order, which places it once for every vote cast meanwhile. A vote
+     * racing a removal of the album counts as cast just before it.
+     */
+    private void vote(Album stored, int rating) {
+        stored.rate(rating, epoch);
+        if (stored.markUnplaced()) {
+            unplaced.add(stored);
+        }
+        versions[stored.getGenre().ordinal()].increment();
     }
     /**
-     * Bubblesort algorithm implementation to sort album collection.
+     * Moves every album rated since it was last placed to its place in PR, so
+     * the order reflects every vote counted before this call. Readers of the
+     * rating order call it first; one of them places at a time, and another
+     * that finds nothing queued still waits for it to finish.
      */
-    private void bubbleSort(Album[] ar, Comparator<Album> comparer) {
-        for (int i = 0; i < size - 1; i++) {
-            boolean swap = false;
-            for (int j = 0; j < size - i - 1; j++) {
-                if (comparer.compare(ar[j], ar[j + 1]) > 0) {
-                    Album temp = ar[j];
-                    ar[j] = ar[j + 1];
-                    ar[j + 1] = temp;
-                    swap = true;
+    private void placeRated() {
+        if (unplaced.isEmpty() && !placing) {
+            return;
+        }
+        synchronized (unplaced) {
+            placing = true;
+            try {
+                Album album;
+                while ((album = unplaced.poll()) != null) {
+                    place(album);
                 }
+            } finally {
+                placing = false;
+            }
+        }
+    }
+    private void place(Album album) {
+        album.clearUnplaced();
+        synchronized (album) {
+            double average = album.placedAverage();
+            if (Double.isNaN(average)) {
+                return; // Removed since it was rated
             }
-            if (!swap) {
-                break; // terminate if no swaps occurred
+            RatedAlbum rated = new RatedAlbum(album);
+            if (rated.average != average) {
+                // The average is part of the rating order, so move the album to its new place in one step
+                byRating.replace(new RatedAlbum(album, average), rated);
+                album.placeAt(rated.average);
             }
         }
     }
     /**
-     * Bubblesort algorithm usage to sort collection by date.
+     * Attaches a write-ahead log that every later add, remove and rate is
+     * appended to, before it is applied.
+     *
+     * @param log Log to append to, or null to stop logging.
      */
-    public void printByDate() {
-        bubbleSort(albums, (x, y) -> {
-            int dateCompare = x.getReleased().compareTo(y.getReleased());
-            if (dateCompare != 0) {
-                return dateCompare;
+    void setLog(WriteAheadLog log) {
+        this.log = log;
+    }
+    /**
+     * Waits until every mutation so far is durable. Does nothing if no log is attached.
+     */
+    public void sync() {
+        WriteAheadLog log = this.log;
+        if (log == null) {
+            return;
+        }
+        try {
+            log.sync();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    /**
+     * Copies the current state of every album, so it can be saved while the collection keeps changing.
+     *
+     * @return Detached copies of the albums, in date order.
+     */
+    Album[] capture() {
+        return capture(new Cut(byDate.iterator(), byDate.size(), Long.MAX_VALUE));
+    }
+    /**
+     * Pins the albums as they stand and starts a new epoch of votes, in
+     * O(log n), so capture(Cut) can copy them later while the collection keeps
+     * changing. Call it with mutations paused, so the cut lines up exactly with
+     * a point in the write-ahead log, and capture each cut before taking the next.
+     *
+     * @return The albums at the cut.
+     */
+    Cut cut() {
+        Cut cut = new Cut(byDate.iterator(), byDate.size(), epoch);
+        epoch = cut.epoch + 1;
+        return cut;
+    }
+    /**
+     * Copies the albums of a cut with their star counters as they stood at the cut.
+     *
+     * @param cut Albums pinned by cut().
+     * @return Detached copies of the albums, in date order.
+     */
+    Album[] capture(Cut cut) {
+        Album[] copies = new Album[cut.size];
+        int i = 0;
+        while (cut.albums.hasNext()) {
+            Album album = cut.albums.next();
+            if (i == copies.length) {
+                copies = Arrays.copyOf(copies, i * 2 + 1);
+            }
+            copies[i++] = album.copyAsOf(cut.epoch);
+        }
+        return i == copies.length ? copies : Arrays.copyOf(copies, i);
+    }
+    /**
+     * The albums of the collection in date order, as pinned at a cut, with the
+     * epoch whose votes their copies count.
+     */
+    static final class Cut {
+        private final Iterator<Album> albums;
+        private final int size;
+        private final long epoch;
+
+        private Cut(Iterator<Album> albums, int size, long epoch) {
+            this.albums = albums;
+            this.size = size;
+            this.epoch = epoch;
+        }
+    }
+    /**
+     * Blocks every add, remove and rate until resumeMutations, e.g. so a
+     * cut lines up exactly with a point in the write-ahead log. A vote only
+     * waits here with a log attached, as it takes no lock otherwise.
+     * Lookups and listings carry on.
+     */
+    void pauseMutations() {
+        index.lockAll();
+    }
+    /**
+     * Lets the mutations blocked by pauseMutations proceed.
+     */
+    void resumeMutations() {
+        index.unlockAll();
+    }
+    /**
+     * Adds many albums at once to an empty collection, e.g. when reloading a snapshot.
+     * The orders are sorted in bulk and built as balanced trees in O(n log n) overall,
+     * instead of through one tree insert per album. Duplicates are skipped.
+     *
+     * @param loaded Albums to add.
+     * @param n      Number of albums to take from the array.
+     */
+    void restore(Album[] loaded, int n) {
+        if (!isEmpty()) {
+            throw new IllegalStateException("Collection must be empty to restore into.");
+        }
+        pauseMutations();
+        try {
+            Album[] unique = new Album[n];
+            int count = 0;
+            for (int i = 0; i < n; i++) {
+                if (index.put(loaded[i])) {
+                    unique[count++] = loaded[i];
+                    artists.intern(loaded[i].getArtist());
+                }
+            }
+            restoreOrder(byDate, BY_DATE, unique, count);
+            List<Artist> discographies = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                // Date order, so each discography only ever grows at its end
+                byArtist.computeIfAbsent(unique[i].getArtist(), artist -> {
+                    discographies.add(artist);
+                    return new OrderedIndex<>(BY_DATE);
+                }).insert(unique[i]);
+            }
+            search.restore(unique, count, discographies);
+            restoreOrder(byGenre, BY_GENRE, unique, count);
+            for (int from = 0, to; from < count; from = to) {
+                // PG order groups each genre into one run, already sorted for its index
+                Genre genre = unique[from].getGenre();
+                to = from + 1;
+                while (to < count && unique[to].getGenre() == genre) {
+                    to++;
+                }
+                byGenreOf[genre.ordinal()].rebuild(Arrays.copyOfRange(unique, from, to), to - from);
+            }
+            restoreRatingOrder(unique, count);
+            for (LongAdder version : versions) {
+                version.increment();
+            }
+        } finally {
+            resumeMutations();
+        }
+    }
+    private void restoreOrder(OrderedIndex<Album> order, Comparator<Album> comparer, Album[] unique, int count) {
+        Arrays.sort(unique, 0, count, comparer::compare);
+        order.rebuild(unique, count);
+    }
+    /**
+     * Rebuilds the PR order, averaging each album's ratings once.
+     */
+    private void restoreRatingOrder(Album[] unique, int count) {
+        RatedAlbum[] rated = new RatedAlbum[count];
+        for (int i = 0; i < count; i++) {
+            rated[i] = new RatedAlbum(unique[i]);
+            unique[i].placeAt(rated[i].average);
+        }
+        Arrays.sort(rated, BY_RATING::compare);
+        byRating.rebuild(rated, count);
+    }
+    /**
+     * An album with its average rating, read once, as placed in the PR order.
+     */
+    static final class RatedAlbum {
+        final Album album;
+        final double average;
+
+        RatedAlbum(Album album) {
+            this(album, album.avgRatings());
+        }
+
+        RatedAlbum(Album album, double average) {
+            this.album = album;
+            this.average = average;
+        }
+    }
+    /**
+     * Albums of PR entries in order, up to the first entry placed below a bound.
+     */
+    private static final class RatedAlbums implements Iterator<Album> {
+        private final Iterator<RatedAlbum> entries;
+        private final double min;
+        private RatedAlbum next;
+
+        RatedAlbums(Iterator<RatedAlbum> entries, double min) {
+            this.entries = entries;
+            this.min = min;
+            advance();
+        }
+
+        private void advance() {
+            next = entries.hasNext() ? entries.next() : null;
+            if (next != null && next.average < min) {
+                next = null;
             }
-            return x.getTitle().compareTo(y.getTitle());
-        });
-        printAlbums();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Album next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Album album = next.album;
+            advance();
+            return album;
+        }
+    }
+    /**
+     * Tie-breaker of PR: title, then artist name.
+     */
+    private static int compareTitles(Album x, Album y) {
+        int titleCompare = x.getTitle().compareTo(y.getTitle());
+        if (titleCompare != 0) {
+            return titleCompare;
+        }
+        return x.getArtist().getName().compareTo(y.getArtist().getName());
+    }
+    /**
+     * Prints collection sorted by date.
+     *
+     * @param out Sink to print to.
+     */
+    public void printByDate(PrintWriter out) {
+        printCached("PD", byDate.size(), byDate.iterator(), version(), out);
+    }
+    /**
+     * Prints collection sorted by genre.
+     *
+     * @param out Sink to print to.
+     */
+    public void printByGenre(PrintWriter out) {
+        printCached("PG", byGenre.size(), byGenre.iterator(), version(), out);
+    }
+    /**
+     * Prints collection sorted by rating.
+     *
+     * @param out Sink to print to.
+     */
+    public void printByRating(PrintWriter out) {
+        long version = version(); // Read first, so every vote it counts is placed below
+        placeRated();
+        Iterator<Album> albums = new RatedAlbums(byRating.iterator(), Double.NEGATIVE_INFINITY);
+        printCached("PR", byRating.size(), albums, version, out);
+    }
+    /**
+     * Cursor over the collection in date order (PD), from a position of the
+     * order. Albums are yielded lazily from the version of the order current
+     * at this call, so later changes do not disturb it, and reaching the
+     * start costs O(log n) whatever the offset.
+     *
+     * @param offset Number of albums to skip.
+     * @return Albums from the offset on, in date order.
+     */
+    public Iterator<Album> albumsByDate(int offset) {
+        return byDate.iteratorAt(checkOffset(offset));
+    }
+    /**
+     * Cursor over the collection in genre order (PG), from a position of the
+     * order, with the same guarantees as albumsByDate.
+     *
+     * @param offset Number of albums to skip.
+     * @return Albums from the offset on, in genre order.
+     */
+    public Iterator<Album> albumsByGenre(int offset) {
+        return byGenre.iteratorAt(checkOffset(offset));
     }
     /**
-     * Bubblesort algorithm usage to sort collection by genre.
+     * Cursor over the collection in rating order (PR), from a position of the
+     * order, with the same guarantees as albumsByDate.
+     *
+     * @param offset Number of albums to skip.
+     * @return Albums from the offset on, in rating order.
+     */
+    public Iterator<Album> albumsByRating(int offset) {
+        placeRated();
+        return new RatedAlbums(byRating.iteratorAt(checkOffset(offset)), Double.NEGATIVE_INFINITY);
+    }
+    private static int checkOffset(int offset) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset must not be negative.");
+        }
+        return offset;
+    }
+    /**
+     * Prints one page of the albums from a cursor, e.g. one of albumsByDate,
+     * formatting only the albums on the page.
+     *
+     * @param cursor Albums in listing order, from the start of the page.
+     * @param limit  Number of albums on a page.
+     * @param out    Sink to print to.
+     * @return Number of albums printed, 0 if the page is past the end.
+     */
+    public int printPage(Iterator<Album> cursor, int limit, PrintWriter out) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Number of albums must be at least 1.");
+        }
+        return printAlbums(cursor, album -> false, limit, out);
+    }
+    /**
+     * Prints the albums of an artist, in release date order. Costs time in
+     * proportion to the number of albums printed, not the size of the collection.
+     *
+     * @param artistName Name of the artist, in any case.
+     * @param out        Sink to print to.
+     * @return False if the collection has no album by the artist.
+     */
+    public boolean printByArtist(String artistName, PrintWriter out) {
+        Artist artist = search.artistNamed(artistName);
+        OrderedIndex<Album> discography = artist == null ? null : byArtist.get(artist);
+        return discography != null && printAlbums(discography.size(), discography.iterator(), out) > 0;
+    }
+    /**
+     * Prints the albums of a genre, in the order of PG. Costs time in
+     * proportion to the number of albums printed, not the size of the collection.
+     *
+     * @param genre Genre to list.
+     * @param out   Sink to print to.
+     * @return False if the collection has no album of the genre.
+     */
+    public boolean printGenre(Genre genre, PrintWriter out) {
+        OrderedIndex<Album> albums = byGenreOf[genre.ordinal()];
+        return printCached("LG," + genre, albums.size(), albums.iterator(), versions[genre.ordinal()].sum(), out);
+    }
+    /**
+     * Prints the albums released between two dates, both included, in the order of PD.
+     * Seeks the first album in the date index, then prints until the range ends,
+     * so it costs O(log n + k) for k albums printed.
+     *
+     * @param from Earliest release date.
+     * @param to   Latest release date.
+     * @param out  Sink to print to.
+     * @return False if no album was released in the range.
      */
-    public void printByGenre() {
-        bubbleSort(albums, (x, y) -> {
-            int compareGenre = x.getGenre().toString().compareTo(y.getGenre().toString());
-            if (compareGenre != 0) {
-                return compareGenre;
+    public boolean printReleasedBetween(Date from, Date to, PrintWriter out) {
+        Iterator<Album> albums = byDate.iteratorFrom(album -> album.getReleased().compareTo(from) < 0);
+        return printAlbums(albums, album -> album.getReleased().compareTo(to) > 0, Integer.MAX_VALUE, out) > 0;
+    }
+    /**
+     * Prints the albums whose average rating is between two values, both included,
+     * in the order of PR. Unrated albums average 0. Seeks the first album in the
+     * rating index, then prints until the range ends, so it costs O(log n + k)
+     * for k albums printed.
+     *
+     * @param min Lowest average rating, a finite number.
+     * @param max Highest average rating, a finite number.
+     * @param out Sink to print to.
+     * @return False if no album is rated in the range.
+     */
+    public boolean printRatedBetween(double min, double max, PrintWriter out) {
+        if (!Double.isFinite(min) || !Double.isFinite(max)) {
+            throw new IllegalArgumentException("Rating bounds must be finite numbers.");
+        }
+        placeRated();
+        // The rating index runs from the highest average down
+        Iterator<Album> albums = new RatedAlbums(byRating.iteratorFrom(rated -> rated.average > max), min);
+        return printAlbums(albums, album -> false, Integer.MAX_VALUE, out) > 0;
+    }
+    /**
+     * Prints the highest rated albums, in the order of PR. The rating index is
+     * kept in order, placing the albums rated since the last read first, so this
+     * walks only the first k albums of it and costs O(log n + k + v) for v albums
+     * rated since, whatever the size of the collection.
+     *
+     * @param k   Number of albums to print at most.
+     * @param out Sink to print to.
+     */
+    public void printTopRated(int k, PrintWriter out) {
+        if (k < 1) {
+            throw new IllegalArgumentException("Number of albums must be at least 1.");
+        }
+        placeRated();
+        printAlbums(new RatedAlbums(byRating.iterator(), Double.NEGATIVE_INFINITY), album -> false, k, out);
+    }
+    /**
+     * Finds albums by partial or misspelled title or artist name, ignoring case.
+     * Albums whose title starts with the query come first, then albums of
+     * artists whose name does, then albums whose title or artist name starts
+     * with something a typo or two away from the query, closest first. Prefix
+     * matches cost O(log n + k); typo-tolerant matches only look at albums
+     * sharing the query's rarest trigrams.
+     *
+     * @param query Text to look for.
+     * @param limit Number of albums to return at most, at least 1.
+     * @return Matching albums, best first.
+     */
+    public List<Album> search(String query, int limit) {
+        if (query.isEmpty()) {
+            throw new IllegalArgumentException("Search text must not be empty.");
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("Number of albums must be at least 1.");
+        }
+        List<Album> found = new ArrayList<>();
+        Set<Album> seen = new HashSet<>();
+        Iterator<Album> titles = search.titlesFrom(query);
+        while (found.size() < limit && titles.hasNext()) {
+            Album album = titles.next();
+            if (!SearchIndex.startsWith(album.getTitle(), query)) {
+                break;
+            }
+            addMatch(album, found, seen);
+        }
+        Iterator<Artist> artistsFrom = search.artistsFrom(query);
+        while (found.size() < limit && artistsFrom.hasNext()) {
+            Artist artist = artistsFrom.next();
+            if (!SearchIndex.startsWith(artist.getName(), query)) {
+                break;
+            }
+            addDiscography(artist, limit, found, seen);
+        }
+        int edits = SearchIndex.allowedEdits(query);
+        if (edits > 0 && found.size() < limit) {
+            for (Album album : search.titlesLike(query, edits)) {
+                if (found.size() == limit) {
+                    break;
+                }
+                addMatch(album, found, seen);
+            }
+            for (Artist artist : search.artistsLike(query, edits)) {
+                addDiscography(artist, limit, found, seen);
+            }
+        }
+        return found;
+    }
+    private void addDiscography(Artist artist, int limit, List<Album> found, Set<Album> seen) {
+        OrderedIndex<Album> discography = byArtist.get(artist);
+        if (discography == null) {
+            return;
+        }
+        for (Album album : discography) {
+            if (found.size() == limit) {
+                return;
             }
-            return x.getArtist().getName().compareTo(y.getArtist().getName());
-        });
-        printAlbums();
+            addMatch(album, found, seen);
+        }
+    }
+    private static void addMatch(Album album, List<Album> found, Set<Album> seen) {
+        if (seen.add(album)) {
+            found.add(album);
+        }
     }
     /**
-     * Bubblesort algorithm usage to sort collection by rating.
+     * Prints the albums found by search, best first.
+     *
+     * @param query Text to look for.
+     * @param limit Number of albums to print at most.
+     * @param out   Sink to print to.
+     * @return False if no album matches.
      */
-    public void printByRating() {
-        bubbleSort(albums, (x, y) -> {
-            int ratingCompare = Double.compare(y.avgRatings(), x.avgRatings());
-            if (ratingCompare != 0) {
-                return ratingCompare;
+    public boolean printSearch(String query, int limit, PrintWriter out) {
+        return printAlbums(search(query, limit).iterator(), album -> false, limit, out) > 0;
+    }
+    /**
+     * Number of changes to the albums of every genre so far. Every change
+     * counts once it is applied, so a listing rendered after reading this
+     * shows at least the changes counted.
+     *
+     * @return Version of the whole collection.
+     */
+    private long version() {
+        long version = 0;
+        for (LongAdder changes : versions) {
+            version += changes.sum();
+        }
+        return version;
+    }
+    /**
+     * Prints the listing of an ordered index from the listing cache. On a miss
+     * the listing streams out as it is rendered, with a copy kept for the
+     * cache, which is dropped as soon as it outgrows the cache, so a miss costs
+     * no more than an uncached listing. Listings too long to ever fit the cache
+     * stream out directly, without counting as a miss.
+     *
+     * @param key     Name of the listing in the cache.
+     * @param size    Number of albums in the listing.
+     * @param albums  Albums of the listing, in order.
+     * @param version Version of the albums in the listing, read before rendering.
+     * @param out     Sink to print to.
+     * @return False if the listing is empty.
+     */
+    private boolean printCached(String key, int size, Iterator<Album> albums, long version, PrintWriter out) {
+        if ((long) size * SHORTEST_LINE > listings.capacity()) {
+            return printAlbums(size, albums, out) > 0;
+        }
+        String listing = listings.get(key, version);
+        if (listing != null) {
+            out.write(listing);
+            return !listing.isEmpty();
+        }
+        ListingCache.Recorder recorder = new ListingCache.Recorder(out, listings.capacity());
+        int printed = printAlbums(size, albums, new PrintWriter(recorder));
+        String recorded = recorder.recorded();
+        if (recorded != null) {
+            listings.put(key, version, recorded);
+        }
+        return printed > 0;
+    }
+    /**
+     * Prints a whole listing. Long listings are rendered in parallel, with the same output.
+     *
+     * @param size   Number of albums in the listing.
+     * @param albums Albums of the listing, in order.
+     * @param out    Sink to print to.
+     * @return Number of albums printed.
+     */
+    private int printAlbums(int size, Iterator<Album> albums, PrintWriter out) {
+        if (ParallelListing.worthwhile(size)) {
+            return ParallelListing.print(albums, Album::appendTo, out);
+        }
+        return printAlbums(albums, album -> false, Integer.MAX_VALUE, out);
+    }
+    /**
+     * Prints albums in the order of an iterator until one is past the end of the
+     * listing or enough are printed. Output streams out in chunks, so no full
+     * listing is ever built.
+     *
+     * @param albums Albums to print.
+     * @param past   Test that holds for the first album after the listing.
+     * @param limit  Number of albums to print at most.
+     * @param out    Sink to print to.
+     * @return Number of albums printed.
+     */
+    private int printAlbums(Iterator<Album> albums, Predicate<Album> past, int limit, PrintWriter out) {
+        // Per call, so concurrent listings do not share buffers; no per-album strings are made
+        String newLine = System.lineSeparator();
+        StringBuilder listing = new StringBuilder();
+        char[] chunk = new char[LISTING_CHUNK];
+        int printed = 0;
+        while (printed < limit && albums.hasNext()) {
+            Album album = albums.next();
+            if (past.test(album)) {
+                break;
+            }
+            album.appendTo(listing).append(newLine);
+            printed++;
+            if (listing.length() >= LISTING_CHUNK) {
+                drainListing(listing, chunk, out);
             }
-            return x.getTitle().compareTo(y.getTitle());
-        });
-        printAlbums();
+        }
+        drainListing(listing, chunk, out);
+        return printed;
     }
     /**
-     * Iterates through a for loop to print sorted collection.
+     * Copies the listing buffer to the sink through a char array, then empties it.
+     *
+     * @param listing Buffer holding the rendered albums.
+     * @param chunk   Array to copy through.
+     * @param out     Sink to write to.
      */
-    private void printAlbums() {
-        for (int i = 0; i < size; i++) {
-            System.out.println(albums[i]);
+    private static void drainListing(StringBuilder listing, char[] chunk, PrintWriter out) {
+        for (int from = 0; from < listing.length(); from += chunk.length) {
+            int to = Math.min(listing.length(), from + chunk.length);
+            listing.getChars(from, to, chunk, 0);
+            out.write(chunk, 0, to - from);
         }
+        listing.setLength(0);
     }
     /**
      * Interface for defining comparators.
@@ -177,26 +919,49 @@ public class Collection {
     interface Comparator<I> {
         int compare(I a, I b);
     }
+    /**
+     * Getter for number of listings printed from the listing cache.
+     *
+     * @return Number of cache hits.
+     */
+    public long getListingCacheHits() {
+        return listings.hits();
+    }
+    /**
+     * Getter for number of listings that had to be rendered for the listing cache.
+     *
+     * @return Number of cache misses.
+     */
+    public long getListingCacheMisses() {
+        return listings.misses();
+    }
     /**
      * Checks if collection is empty.
      *
      * @return True if collection is empty, false otherwise.
      */
     public boolean isEmpty() {
-        return size == 0;
+        return byDate.size() == 0;
     }
     /**
-     * Retrieves album from collection.
+     * Retrieves album from collection. The album is the stored one, so rate it
+     * through rate() rather than on its own, which could not move it in PR order.
      *
      * @param albumToFind Album to be found.
      * @return Found album, or null if not found.
      */
     public Album getAlbum(Album albumToFind) {
-        for (Album album : albums) {
-            if (album.equals(albumToFind)) {
-                return album;
-            }
-        }
-        return null;  // Return null if album is not found
+        return index.get(albumToFind);  // null if album is not found
+    }
+    /**
+     * Retrieves the album with a title and artist name, ignoring case, from collection.
+     * As with getAlbum(Album), the album is the stored one.
+     *
+     * @param title      Title of the album.
+     * @param artistName Name of the artist.
+     * @return Found album, or null if not found.
+     */
+    public Album getAlbum(String title, String artistName) {
+        return index.get(title, artistName);
     }
 }
@@ -5,17 +5,69 @@ package album;
  *
  * @author Arush Bhardwaj
  */
-import album.album.Collection;
-
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.file.Path;
+import java.util.Iterator;
 import java.util.Scanner;
 public class CollectionManager {
+    private static final int OUTPUT_BUFFER = 1 << 16;
+    private static final int SEARCH_RESULTS = 20;
+    private static final int PAGE_SIZE = 20;
+    private static final String[] COMMANDS = {"A", "D", "R", "PD", "PG", "PR", "LA", "LG", "RD", "RR", "TR", "S"};
     private Collection collection;
+    private PrintWriter out;
+    private CommandParser parser;
     /**
      * Constructor for the CollectionManager class.
+     * Output goes to standard output through a buffer that is flushed once per command.
      */
     public CollectionManager() {
-        this.collection = new Collection();
-        System.out.println("album.album.Collection Manager is up running.");
+        this(new Collection());
+    }
+    /**
+     * Constructor for the CollectionManager class managing an existing collection,
+     * e.g. one recovered from a CollectionStore, with output to standard output.
+     *
+     * @param collection Collection to manage.
+     */
+    public CollectionManager(Collection collection) {
+        this(collection, new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), OUTPUT_BUFFER)));
+    }
+    /**
+     * Constructor for the CollectionManager class writing to the given sink.
+     * The sink is flushed after every command; a buffered sink also flushes
+     * on its own whenever its buffer fills up.
+     *
+     * @param out Sink for all output of the manager.
+     */
+    public CollectionManager(PrintWriter out) {
+        this(new Collection(), out);
+    }
+    /**
+     * Constructor for the CollectionManager class managing an existing collection
+     * and writing to the given sink.
+     *
+     * @param collection Collection to manage.
+     * @param out        Sink for all output of the manager.
+     */
+    public CollectionManager(Collection collection, PrintWriter out) {
+        this.collection = collection;
+        this.out = out;
+        this.parser = new CommandParser();
+        out.println("album.album.Collection Manager is up running.");
+        out.flush();
+    }
+    /**
+     * Getter for the managed collection, e.g. to serve it to other sessions too.
+     *
+     * @return The managed collection.
+     */
+    public Collection getCollection() {
+        return collection;
     }
     /**
      * The main method to run the Collection Manager.
@@ -25,134 +77,370 @@ public class CollectionManager {
         Scanner view = new Scanner(System.in);
         String in;
         while (true) {
-            in = view.nextLine().trim();
-            if (in.isEmpty()) {
-                continue;
+            in = view.nextLine();
+            if (!execute(in, 0, in.length())) {
+                break;
             }
-            if (in.equals("Q")) {
+            flush();
+        }
+        out.println("album.album.Collection Manager terminated.");
+        out.flush();
+    }
+    /**
+     * Runs a session reading commands from the given source, e.g. a network
+     * connection, until "Q" or the end of the input. Output is flushed once per
+     * command. Other sessions may share the collection at the same time.
+     *
+     * @param in Source of commands, one per line.
+     * @throws IOException If reading a command fails.
+     */
+    public void serve(BufferedReader in) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (!execute(line, 0, line.length())) {
                 break;
             }
-            try {
-                processCommand(in);
+            flush();
+        }
+        out.println("album.album.Collection Manager terminated.");
+        out.flush();
+    }
+    /**
+     * Bulk imports a file of commands, typically A records, through memory-mapped I/O.
+     * Each line is handled exactly as if it had been typed, including the messages
+     * for invalid records, and output is flushed once per mapped batch of lines.
+     * A record missing fields is reported with its line number and skipped;
+     * any other failure, e.g. of the log, ends the import. A "Q" line ends it too.
+     *
+     * @param file File of commands, one per line.
+     * @throws IOException If the file cannot be read.
+     */
+    public void importFile(Path file) throws IOException {
+        BulkLoader.load(file, new BulkLoader.LineHandler() {
+            private long lineNumber;
+
+            @Override
+            public boolean line(CharSequence text, int from, int to) {
+                lineNumber++;
+                try {
+                    return execute(text, from, to);
+                } catch (ArrayIndexOutOfBoundsException e) {
+                    // The parser's signal of a missing field; commands read every field they need
+                    // before touching the collection, so the line has changed nothing
+                    out.println("Line " + lineNumber + " is malformed: " + text.subSequence(from, to));
+                    return true;
+                }
             }
-            catch (IllegalArgumentException e) {
-                System.out.println(e.getMessage());
+
+            @Override
+            public void endOfBatch() {
+                flush();
             }
+        });
+        flush();
+    }
+    /**
+     * Makes the mutations so far durable, if the collection is logged, then
+     * flushes the output, so nothing is reported that a crash could lose.
+     */
+    private void flush() {
+        collection.sync();
+        out.flush();
+    }
+    /**
+     * Executes one input line, skipping blank lines.
+     *
+     * @param text Characters holding the line.
+     * @param from Index of the first character of the line.
+     * @param to   Index just past the last character of the line.
+     * @return False if the line is "Q", true otherwise.
+     */
+    private boolean execute(CharSequence text, int from, int to) {
+        while (from < to && text.charAt(from) <= ' ') {
+            from++;
+        }
+        while (to > from && text.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        if (from == to) {
+            return true;
+        }
+        if (to - from == 1 && text.charAt(from) == 'Q') {
+            return false;
+        }
+        try {
+            processCommand(text, from, to);
         }
-        System.out.println("album.album.Collection Manager terminated.");
+        catch (IllegalArgumentException e) {
+            out.println(e.getMessage());
+        }
+        return true;
     }
     /**
      * Processes user command and performs corresponding action.
      *
-     * @param input Command provided.
+     * @param input Characters holding the command.
+     * @param from  Index of the first character of the command.
+     * @param to    Index just past the last character of the command.
      */
-    private void processCommand(String input) {
-        String[] segments = input.split(",");
-        String command = segments[0].trim();
+    private void processCommand(CharSequence input, int from, int to) {
+        parser.parse(input, from, to);
+        String command = parser.keyword(0, COMMANDS);
+        if (command == null) {
+            out.println("Invalid command!");
+            return;
+        }
         switch (command) {
             case "A":
-                addAlbum(segments);
+                addAlbum();
                 break;
             case "D":
-                removeAlbum(segments);
+                removeAlbum();
                 break;
             case "R":
-                rateAlbum(segments);
+                rateAlbum();
                 break;
             case "PD":
             case "PG":
             case "PR":
                 if (collection.isEmpty()) {
-                    System.out.println("album.album.Collection is empty!");
+                    out.println("album.album.Collection is empty!");
+                } else if (parser.fieldCount() > 1) {
+                    listPage(command);
                 } else {
                     switch (command) {
                         case "PD":
-                            collection.printByDate();
+                            collection.printByDate(out);
                             break;
                         case "PG":
-                            collection.printByGenre();
+                            collection.printByGenre(out);
                             break;
                         case "PR":
-                            collection.printByRating();
+                            collection.printByRating(out);
                             break;
                     }
                 }
                 break;
-            default: System.out.println("Invalid command!");
+            case "LA":
+                if (!hasFields(2)) {
+                    break;
+                }
+                String artistName = parser.trimmedField(1);
+                if (!collection.printByArtist(artistName, out)) {
+                    out.println("No albums by " + artistName + " in the collection.");
+                }
+                break;
+            case "LG":
+                if (!hasFields(2)) {
+                    break;
+                }
+                Genre genre = Genre.getGenreByName(parser.trimmedField(1));
+                if (!collection.printGenre(genre, out)) {
+                    out.println("No " + genre + " albums in the collection.");
+                }
+                break;
+            case "RD":
+                listReleasedBetween();
+                break;
+            case "RR":
+                listRatedBetween();
+                break;
+            case "S":
+                if (!hasFields(2)) {
+                    break;
+                }
+                String query = parser.trimmedField(1);
+                int limit = parser.fieldCount() > 2 ? parser.intField(2) : SEARCH_RESULTS;
+                if (!collection.printSearch(query, limit, out)) {
+                    out.println("No albums match " + query + ".");
+                }
+                break;
+            case "TR":
+                if (!hasFields(2)) {
+                    break;
+                }
+                int k = parser.intField(1);
+                if (collection.isEmpty()) {
+                    out.println("album.album.Collection is empty!");
+                } else {
+                    collection.printTopRated(k, out);
+                }
+                break;
         }
     }
     /**
-     * Removes album from the collection based on input.
+     * Checks that the parsed command has at least a number of fields, so a
+     * short command is reported like an unknown one instead of failing.
      *
-     * @param segments Array of input segments.
-     */
-    private void removeAlbum(String[] segments) {
-        String title = segments[1].trim();
-        String artistName = segments[2].trim();
-        Album album = new Album(title, new Artist(artistName, null), null, null);
-        if (collection.remove(album)) {
-            System.out.println(title + "(" + artistName + ") removed from the collection.");
-        } else {
-            System.out.println(title + "(" + artistName + ") is not in the collection.");
+     * @param fields Number of fields the command needs, itself included.
+     * @return True if the command has them.
+     */
+    private boolean hasFields(int fields) {
+        if (parser.fieldCount() >= fields) {
+            return true;
+        }
+        out.println("Invalid command!");
+        return false;
+    }
+    /**
+     * Lists one page of an ordering, given as PD, PG or PR followed by
+     * offset and, optionally, the number of albums on the page.
+     */
+    private void listPage(String command) {
+        int offset = parser.intField(1);
+        int limit = parser.fieldCount() > 2 ? parser.intField(2) : PAGE_SIZE;
+        Iterator<Album> cursor;
+        switch (command) {
+            case "PD":
+                cursor = collection.albumsByDate(offset);
+                break;
+            case "PG":
+                cursor = collection.albumsByGenre(offset);
+                break;
+            default:
+                cursor = collection.albumsByRating(offset);
+                break;
+        }
+        if (collection.printPage(cursor, limit, out) == 0) {
+            out.println("No albums at offset " + offset + ".");
+        }
+    }
+    /**
+     * Lists the albums released in a range of dates, given as RD,from,to.
+     */
+    private void listReleasedBetween() {
+        if (!hasFields(3)) {
+            return;
+        }
+        Date from = rangeDate(1);
+        Date to = rangeDate(2);
+        if (from == null || to == null) {
+            return;
+        }
+        if (!collection.printReleasedBetween(from, to, out)) {
+            out.println("No albums released between " + from + " and " + to + ".");
+        }
+    }
+    /**
+     * Parses a bound of a date range, printing why if it is not a date an album could have.
+     *
+     * @param field Index of the month/day/year field.
+     * @return The date, or null if it is invalid.
+     */
+    private Date rangeDate(int field) {
+        if (parser.trimmedDateParts(field) == 3) {
+            try {
+                Date date = new Date(parser.trimmedDatePart(field, 2), parser.trimmedDatePart(field, 0),
+                        parser.trimmedDatePart(field, 1));
+                if (date.isValid()) {
+                    return date;
+                }
+            } catch (NumberFormatException e) {
+                // Reported below, like an impossible date
+            }
+        }
+        out.println("Date: " + parser.trimmedField(field) + " is invalid.");
+        return null;
+    }
+    /**
+     * Lists the albums with an average rating in a range, given as RR,min,max.
+     */
+    private void listRatedBetween() {
+        if (!hasFields(3)) {
+            return;
+        }
+        Double min = rangeRating(1);
+        Double max = rangeRating(2);
+        if (min == null || max == null) {
+            return;
+        }
+        if (!collection.printRatedBetween(min, max, out)) {
+            out.println("No albums with an average rating between " + parser.trimmedField(1) + " and "
+                    + parser.trimmedField(2) + ".");
         }
     }
     /**
-     * Adds album to the collection based on input.
+     * Parses a bound of a rating range, printing why if it is not a number.
      *
-     * @param segments Array of input segments.
-     */
-    private void addAlbum(String[] segments) {
-        String title = segments[1];
-        String artistName = segments[2];
-        String genreStr = segments[4];
-        int releaseY = Integer.parseInt(segments[5].split("/")[2]);
-        int releaseM = Integer.parseInt(segments[5].split("/")[0]);
-        int releaseD = Integer.parseInt(segments[5].split("/")[1]);
+     * @param field Index of the field.
+     * @return The bound, or null if it is invalid.
+     */
+    private Double rangeRating(int field) {
+        String text = parser.trimmedField(field);
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            out.println("Rating: " + text + " is invalid.");
+            return null;
+        }
+    }
+    /**
+     * Removes album from the collection based on the parsed command.
+     */
+    private void removeAlbum() {
+        String title = parser.trimmedField(1);
+        String artistName = parser.trimmedField(2);
+        if (collection.remove(title, artistName)) {
+            out.println(title + "(" + artistName + ") removed from the collection.");
+        } else {
+            out.println(title + "(" + artistName + ") is not in the collection.");
+        }
+    }
+    /**
+     * Adds album to the collection based on the parsed command.
+     */
+    private void addAlbum() {
+        String title = parser.field(1);
+        String artistName = parser.field(2);
+        String genreStr = parser.field(4);
+        int releaseY = parser.datePart(5, 2);
+        int releaseM = parser.datePart(5, 0);
+        int releaseD = parser.datePart(5, 1);
         // Validate release date
         Date releaseDate = new Date(releaseY, releaseM, releaseD);
         if (!releaseDate.isValid()) {
-            System.out.println("album.album.Date Released: " + segments[5] + " is invalid.");
+            out.println("album.album.Date Released: " + parser.field(5) + " is invalid.");
             return;
         }
-        int dobM = Integer.parseInt(segments[3].split("/")[0]);
-        int dobD = Integer.parseInt(segments[3].split("/")[1]);
-        int dobY = Integer.parseInt(segments[3].split("/")[2]);
+        int dobM = parser.datePart(3, 0);
+        int dobD = parser.datePart(3, 1);
+        int dobY = parser.datePart(3, 2);
         // Check if DOB date is valid
         Date dateBirth = new Date(dobY, dobM, dobD);
         if (!dateBirth.isValid()) {
-            System.out.println("album.album.Artist DOB: " + segments[3] + " is invalid.");
+            out.println("album.album.Artist DOB: " + parser.field(3) + " is invalid.");
             return;
         }
-        Artist artist = new Artist(artistName, dateBirth);
-        Genre genre = Genre.getGenreByName(genreStr);
-        Album album = new Album(title, artist, genre, releaseDate);
-        if (collection.add(album)) {
-            System.out.println(title + "(" + artistName + ":" + dobM + "/" + dobD + "/" + dobY + ") added to the collection.");
-        } else {
-            System.out.println(title + "(" + artistName + ":" + dobM + "/" + dobD + "/" + dobY + ") is already in the collection.");
+        // Only share the artist for an album that is going in; add() still decides if another session wins
+        if (!collection.contains(title, artistName)) {
+            Artist artist = collection.artist(artistName, dateBirth);
+            Genre genre = Genre.getGenreByName(genreStr);
+            Album album = new Album(title, artist, genre, releaseDate);
+            if (collection.add(album)) {
+                out.println(title + "(" + artistName + ":" + dobM + "/" + dobD + "/" + dobY + ") added to the collection.");
+                return;
+            }
         }
+        out.println(title + "(" + artistName + ":" + dobM + "/" + dobD + "/" + dobY + ") is already in the collection.");
     }
     /**
-     * Rates album in the collection based on input.
-     *
-     * @param segments Array of input segments.
-     */
-    private void rateAlbum(String[] segments) {
-        String title = segments[1].trim();
-        String artistName = segments[2].trim();
-        int rating = Integer.parseInt(segments[4]);
-        Album albumToRate = new Album(title, new Artist(artistName, null), null, null);
-        if (collection.contains(albumToRate)) {
-            // Find the album in the collection to retrieve its release date
-            Album foundAlbum = collection.getAlbum(albumToRate);
+     * Rates album in the collection based on the parsed command.
+     */
+    private void rateAlbum() {
+        String title = parser.trimmedField(1);
+        String artistName = parser.trimmedField(2);
+        int rating = parser.intField(4);
+        // Find the album in the collection to retrieve its release date; one lookup, as other sessions may remove it
+        Album foundAlbum = collection.getAlbum(title, artistName);
+        if (foundAlbum != null) {
             Date releaseDate = foundAlbum.getReleased();
 
             // Output
-            System.out.println("You rate " + rating + " for " + title + ":" + releaseDate + "(" + artistName +
+            out.println("You rate " + rating + " for " + title + ":" + releaseDate + "(" + artistName +
                     ")");
-            collection.rate(albumToRate, rating);
+            collection.rate(title, artistName, rating);
         } else {
-            System.out.println(title + "(" + artistName + ") is not in the collection.");
+            out.println(title + "(" + artistName + ") is not in the collection.");
         }
     }
 }
@@ -0,0 +1,166 @@
+package album;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Network front end serving a shared collection over local TCP. Each
+ * connection is a session speaking the same line protocol as the console
+ * (A, D, R, PD, PG, PR and Q), with its own CollectionManager and its own
+ * buffered output, flushed once per command.
+ * <p>
+ * Sessions run one thread each, so that a session is plain blocking code.
+ * Where the JVM has virtual threads they are used, so thousands of mostly
+ * idle sessions cost little; otherwise sessions fall back to a pool of
+ * platform threads.
+ */
+public class CollectionServer implements Closeable {
+    private static final int INPUT_BUFFER = 1 << 12;
+    private static final int OUTPUT_BUFFER = 1 << 13;
+    private static final int BACKLOG = 1024;
+    private static final long MIN_ACCEPT_BACKOFF_MILLIS = 10;
+    private static final long MAX_ACCEPT_BACKOFF_MILLIS = 1000;
+    private final Collection collection;
+    private final ServerSocket listener;
+    private final ExecutorService sessions;
+    private final Set<Socket> connections;
+    private final Thread acceptor;
+    /**
+     * Starts serving a collection on a port of the loopback interface.
+     *
+     * @param collection Collection shared by every session.
+     * @param port       Port to listen on, or 0 for any free port.
+     * @throws IOException If the port cannot be bound.
+     */
+    public CollectionServer(Collection collection, int port) throws IOException {
+        this.collection = collection;
+        this.listener = new ServerSocket();
+        listener.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+        this.sessions = sessionExecutor();
+        this.connections = ConcurrentHashMap.newKeySet();
+        this.acceptor = new Thread(this::acceptLoop, "album-server-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+    /**
+     * Getter for the port the server listens on.
+     *
+     * @return Local port of the server.
+     */
+    public int getPort() {
+        return listener.getLocalPort();
+    }
+    /**
+     * Accepts connections until the listener is closed. A failed accept, such
+     * as running out of file descriptors, is logged and retried after a pause
+     * that doubles while failures persist, rather than in a tight loop.
+     */
+    private void acceptLoop() {
+        long backoff = MIN_ACCEPT_BACKOFF_MILLIS;
+        while (!listener.isClosed()) {
+            Socket socket;
+            try {
+                socket = listener.accept();
+            } catch (IOException e) {
+                if (listener.isClosed()) {
+                    return;
+                }
+                System.err.println("Accept failed, retrying in " + backoff + " ms: " + e);
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+                backoff = Math.min(2 * backoff, MAX_ACCEPT_BACKOFF_MILLIS);
+                continue;
+            }
+            backoff = MIN_ACCEPT_BACKOFF_MILLIS;
+            connections.add(socket);
+            try {
+                sessions.execute(() -> serve(socket));
+            } catch (RejectedExecutionException e) {
+                // Closing: the session never starts
+                connections.remove(socket);
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                    // Nothing more to release
+                }
+            }
+        }
+    }
+    /**
+     * Runs one session until the client quits or disconnects.
+     */
+    private void serve(Socket socket) {
+        try (Socket connection = socket) {
+            connection.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(
+                    connection.getInputStream(), StandardCharsets.UTF_8), INPUT_BUFFER);
+            PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(
+                    connection.getOutputStream(), StandardCharsets.UTF_8), OUTPUT_BUFFER));
+            new CollectionManager(collection, out).serve(in);
+        } catch (SocketException e) {
+            // The client went away or the server is closing
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Session ended: " + e);
+        } finally {
+            connections.remove(socket);
+        }
+    }
+    /**
+     * Executor running one thread per session: virtual threads when the
+     * JVM offers them, looked up reflectively so the code also runs on JVMs
+     * without them, else cached platform threads.
+     */
+    static ExecutorService sessionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "album-session");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+    /**
+     * Stops accepting connections and ends every open session.
+     *
+     * @throws IOException If the listening socket cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        listener.close();
+        for (Socket socket : connections) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Already closing
+            }
+        }
+        sessions.shutdown();
+        try {
+            sessions.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package album;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Saves a collection to a compact binary snapshot and loads it back.
+ * Titles and artist names are stored once in a string dictionary, artists
+ * once in an artist table, dates as packed ints, and rating counters
+ * inline with each album. Layout of version 1:
+ * <pre>
+ * int magic, int version
+ * varint strings, then per string: varint length, UTF-8 bytes
+ * varint artists, then per artist: varint name id, int packed date of birth
+ * varint albums, then per album: varint title id, varint artist id,
+ *     byte genre, int packed release date, byte rated, 5 varint star counts if rated
+ * </pre>
+ */
+public class CollectionSnapshot {
+    private static final int MAGIC = 0x414C4243; // "ALBC"
+    private static final int VERSION = 1;
+    private static final int BUFFER = 1 << 16;
+    private static final int STARS = 5;
+    private CollectionSnapshot() {
+    }
+    /**
+     * Writes a snapshot of the collection, as captured when the call starts.
+     * The file is written and forced to disk under a temporary name, then
+     * replaced atomically, so a crash while saving leaves the previous
+     * snapshot intact.
+     *
+     * @param collection Collection to save.
+     * @param file       Snapshot file to write.
+     * @throws IOException If the snapshot cannot be written.
+     */
+    public static void save(Collection collection, Path file) throws IOException {
+        save(Arrays.asList(collection.capture()), file);
+    }
+    /**
+     * Writes a snapshot of a set of albums, e.g. copies captured from a collection.
+     *
+     * @param albums Distinct albums to save.
+     * @param file   Snapshot file to write.
+     * @throws IOException If the snapshot cannot be written.
+     */
+    static void save(Iterable<Album> albums, Path file) throws IOException {
+        Map<String, Integer> artistIds = new HashMap<>();
+        Dictionary dictionary = new Dictionary();
+        int[] artistNames = new int[16];
+        int[] artistBorn = new int[16];
+        int artists = 0;
+        int albumCount = 0;
+        for (Album album : albums) {
+            dictionary.id(album.getTitle());
+            Artist artist = album.getArtist();
+            String key = artist.getName() + '\u0000' + artist.getBorn().pack();
+            if (!artistIds.containsKey(key)) {
+                if (artists == artistNames.length) {
+                    artistNames = grow(artistNames);
+                    artistBorn = grow(artistBorn);
+                }
+                artistNames[artists] = dictionary.id(artist.getName());
+                artistBorn[artists] = artist.getBorn().pack();
+                artistIds.put(key, artists++);
+            }
+            albumCount++;
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeVarInt(out, dictionary.size);
+            for (int i = 0; i < dictionary.size; i++) {
+                byte[] bytes = dictionary.values[i].getBytes(StandardCharsets.UTF_8);
+                writeVarInt(out, bytes.length);
+                out.write(bytes);
+            }
+            writeVarInt(out, artists);
+            for (int i = 0; i < artists; i++) {
+                writeVarInt(out, artistNames[i]);
+                out.writeInt(artistBorn[i]);
+            }
+            writeVarInt(out, albumCount);
+            for (Album album : albums) {
+                Artist artist = album.getArtist();
+                writeVarInt(out, dictionary.id(album.getTitle()));
+                writeVarInt(out, artistIds.get(artist.getName() + '\u0000' + artist.getBorn().pack()));
+                out.writeByte(album.getGenre().ordinal());
+                out.writeInt(album.getReleased().pack());
+                out.writeBoolean(album.getRatingCount() > 0);
+                if (album.getRatingCount() > 0) {
+                    for (int star = 1; star <= STARS; star++) {
+                        writeVarInt(out, album.getStarCount(star));
+                    }
+                }
+            }
+            out.flush();
+            // On disk before it replaces the previous snapshot, which a crash would otherwise leave torn
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    /**
+     * Reads a snapshot into a new collection.
+     *
+     * @param file Snapshot file to read.
+     * @return Collection holding the saved albums and their ratings.
+     * @throws IOException If the file cannot be read or is not a supported snapshot.
+     */
+    public static Collection load(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file), BUFFER))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not an album collection snapshot.");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + ".");
+            }
+            String[] strings = new String[readVarInt(in)];
+            byte[] bytes = new byte[64];
+            for (int i = 0; i < strings.length; i++) {
+                int length = readVarInt(in);
+                if (length > bytes.length) {
+                    bytes = new byte[Math.max(length, bytes.length * 2)];
+                }
+                in.readFully(bytes, 0, length);
+                strings[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+            }
+            Artist[] artists = new Artist[readVarInt(in)];
+            for (int i = 0; i < artists.length; i++) {
+                String name = strings[readVarInt(in)];
+                artists[i] = new Artist(name, Date.unpack(in.readInt()));
+            }
+            Genre[] genres = Genre.values();
+            Album[] albums = new Album[readVarInt(in)];
+            int[] counts = new int[STARS];
+            for (int i = 0; i < albums.length; i++) {
+                String title = strings[readVarInt(in)];
+                Artist artist = artists[readVarInt(in)];
+                Genre genre = genres[in.readUnsignedByte()];
+                Album album = new Album(title, artist, genre, Date.unpack(in.readInt()));
+                if (in.readBoolean()) {
+                    for (int star = 0; star < STARS; star++) {
+                        counts[star] = readVarInt(in);
+                    }
+                    album.restoreRatings(counts);
+                }
+                albums[i] = album;
+            }
+            Collection collection = new Collection();
+            collection.restore(albums, albums.length);
+            return collection;
+        }
+    }
+    private static int[] grow(int[] array) {
+        int[] arrayNew = new int[array.length * 2];
+        System.arraycopy(array, 0, arrayNew, 0, array.length);
+        return arrayNew;
+    }
+    /**
+     * Writes a non-negative int in 7-bit groups, low group first.
+     */
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed snapshot: varint too long.");
+    }
+    /**
+     * String table in order of first use.
+     */
+    private static class Dictionary {
+        Map<String, Integer> ids = new HashMap<>();
+        String[] values = new String[16];
+        int size = 0;
+
+        int id(String value) {
+            Integer id = ids.get(value);
+            if (id != null) {
+                return id;
+            }
+            if (size == values.length) {
+                String[] valuesNew = new String[size * 2];
+                System.arraycopy(values, 0, valuesNew, 0, size);
+                values = valuesNew;
+            }
+            values[size] = value;
+            ids.put(value, size);
+            return size++;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package album;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable home of a collection in a directory: the latest snapshot plus the
+ * write-ahead log segments recorded since. Files are numbered by generation;
+ * snapshot-N.bin holds everything logged before wal-N.log, so recovery loads
+ * the newest snapshot and replays the segments from its generation on.
+ * Compaction starts a new segment and pins the albums at the same point,
+ * pausing mutations only for that, then copies the albums and writes the
+ * next snapshot on a background thread while commands keep being served.
+ */
+public class CollectionStore implements Closeable {
+    private static final String SNAPSHOT = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final String SEGMENT = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final long COMPACT_BYTES = 64L << 20;
+    private final Path directory;
+    private final Collection collection;
+    private final WriteAheadLog log;
+    private final ExecutorService compactor;
+    private long generation;
+    private Future<?> compaction;
+    private CollectionStore(Path directory, Collection collection, WriteAheadLog log, long generation) {
+        this.directory = directory;
+        this.collection = collection;
+        this.log = log;
+        this.generation = generation;
+        this.compactor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "album-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    /**
+     * Opens the store in a directory, recovering the collection from the newest
+     * snapshot and the log segments after it, then starts a new segment.
+     *
+     * @param directory Directory of the store; created if missing.
+     * @return The opened store.
+     * @throws IOException If the files cannot be read or the new segment created.
+     */
+    public static CollectionStore open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        long snapshot = latest(directory, SNAPSHOT, SNAPSHOT_SUFFIX);
+        Collection collection = snapshot < 0 ? new Collection()
+                : CollectionSnapshot.load(snapshotPath(directory, snapshot));
+        long base = Math.max(snapshot, 0);
+        long last = base;
+        for (long segment : generations(directory, SEGMENT, SEGMENT_SUFFIX)) {
+            if (segment >= base) {
+                // Older segments are already folded into the snapshot
+                WriteAheadLog.replay(segmentPath(directory, segment), collection);
+            }
+            last = Math.max(last, segment);
+        }
+        long generation = last + 1;
+        WriteAheadLog log = new WriteAheadLog(segmentPath(directory, generation));
+        CollectionStore store = new CollectionStore(directory, collection, log, generation);
+        log.whenFull(COMPACT_BYTES, store::compactLater);
+        collection.setLog(log);
+        return store;
+    }
+    /**
+     * Getter for the recovered collection; its mutations are logged from now on.
+     *
+     * @return The collection of the store.
+     */
+    public Collection collection() {
+        return collection;
+    }
+    /**
+     * Folds the log into a new snapshot in the background. Does nothing if a
+     * compaction is already running.
+     *
+     * @throws IOException If the new log segment cannot be started.
+     */
+    public synchronized void compact() throws IOException {
+        if (compaction != null && !compaction.isDone()) {
+            return;
+        }
+        long next = generation + 1;
+        log.prepare(segmentPath(directory, next));
+        Collection.Cut cut;
+        // No mutation may land between the end of the old segment and the cut;
+        // neither waits for the disk nor walks the albums, so the pause is short
+        collection.pauseMutations();
+        try {
+            log.rotate();
+            cut = collection.cut();
+        } finally {
+            collection.resumeMutations();
+        }
+        generation = next;
+        compaction = compactor.submit(() -> {
+            CollectionSnapshot.save(Arrays.asList(collection.capture(cut)), snapshotPath(directory, next));
+            // The snapshot and the new segment must be listed durably before what they replace goes
+            syncDirectory();
+            deleteBefore(SNAPSHOT, SNAPSHOT_SUFFIX, next);
+            deleteBefore(SEGMENT, SEGMENT_SUFFIX, next);
+            return null;
+        });
+        log.whenFull(COMPACT_BYTES, this::compactLater);
+    }
+    /**
+     * Hands compaction to the compactor thread, as the log calls back from
+     * inside a mutation that must not wait for every other one.
+     */
+    private void compactLater() {
+        try {
+            compactor.execute(this::compactQuietly);
+        } catch (RejectedExecutionException e) {
+            // The store is closing; the next open recovers from the log as it is
+        }
+    }
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (IOException e) {
+            // The log is intact without compaction; the next full segment retries
+            log.whenFull(COMPACT_BYTES, this::compactLater);
+        }
+    }
+    private void syncDirectory() throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+    private void deleteBefore(String prefix, String suffix, long generation) throws IOException {
+        for (long old : generations(directory, prefix, suffix)) {
+            if (old < generation) {
+                Files.deleteIfExists(directory.resolve(prefix + old + suffix));
+            }
+        }
+    }
+    /**
+     * Waits for a running compaction, then flushes and closes the log.
+     *
+     * @throws IOException If the log cannot be flushed.
+     */
+    @Override
+    public void close() throws IOException {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        collection.setLog(null);
+        log.close();
+    }
+    private static Path snapshotPath(Path directory, long generation) {
+        return directory.resolve(SNAPSHOT + generation + SNAPSHOT_SUFFIX);
+    }
+    private static Path segmentPath(Path directory, long generation) {
+        return directory.resolve(SEGMENT + generation + SEGMENT_SUFFIX);
+    }
+    private static long latest(Path directory, String prefix, String suffix) throws IOException {
+        long[] found = generations(directory, prefix, suffix);
+        return found.length == 0 ? -1 : found[found.length - 1];
+    }
+    /**
+     * Lists the generations of the files with a prefix and suffix, in ascending order.
+     */
+    private static long[] generations(Path directory, String prefix, String suffix) throws IOException {
+        long[] found = new long[8];
+        int count = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String number = name.substring(prefix.length(), name.length() - suffix.length());
+                if (number.isEmpty() || !number.chars().allMatch(Character::isDigit)) {
+                    continue;
+                }
+                if (count == found.length) {
+                    found = Arrays.copyOf(found, count * 2);
+                }
+                found[count++] = Long.parseLong(number);
+            }
+        }
+        found = Arrays.copyOf(found, count);
+        Arrays.sort(found);
+        return found;
+    }
+}
@@ -0,0 +1,241 @@
+package album;
+
+/**
+ * Single-pass tokenizer for the comma-separated command grammar.
+ * It records where each field starts and ends instead of splitting the
+ * line into strings, and parses numbers and dates in place. Fields and
+ * date parts follow the same rules as String.split, so a malformed line
+ * fails with the same exception and message as splitting would give.
+ */
+class CommandParser {
+    private static final int FIELDS = 8;
+    private static final int MAX_FAST_DIGITS = 9; // any 9 digit number fits in an int
+    private CharSequence line;
+    private int[] starts;
+    private int[] ends;
+    private int count;
+    /**
+     * Constructor for CommandParser class.
+     */
+    CommandParser() {
+        starts = new int[FIELDS];
+        ends = new int[FIELDS];
+        count = 0;
+    }
+    /**
+     * Tokenizes a command line, replacing the previously parsed one.
+     *
+     * @param input Characters holding the command.
+     * @param from  Index of the first character of the command.
+     * @param to    Index just past the last character of the command.
+     */
+    void parse(CharSequence input, int from, int to) {
+        line = input;
+        count = 0;
+        int start = from;
+        for (int i = from; i < to; i++) {
+            if (input.charAt(i) == ',') {
+                addField(start, i);
+                start = i + 1;
+            }
+        }
+        addField(start, to);
+        if (count > 1) {
+            // Like String.split, drop trailing empty fields
+            while (count > 0 && starts[count - 1] == ends[count - 1]) {
+                count--;
+            }
+        }
+    }
+    private void addField(int start, int end) {
+        if (count == starts.length) {
+            int[] startsNew = new int[count * 2];
+            int[] endsNew = new int[count * 2];
+            System.arraycopy(starts, 0, startsNew, 0, count);
+            System.arraycopy(ends, 0, endsNew, 0, count);
+            starts = startsNew;
+            ends = endsNew;
+        }
+        starts[count] = start;
+        ends[count] = end;
+        count++;
+    }
+    /**
+     * Getter for number of fields in the parsed line.
+     *
+     * @return Number of fields.
+     */
+    int fieldCount() {
+        return count;
+    }
+    /**
+     * Returns a field exactly as written.
+     *
+     * @param field Index of the field.
+     * @return Text of the field.
+     */
+    String field(int field) {
+        checkField(field);
+        return line.subSequence(starts[field], ends[field]).toString();
+    }
+    /**
+     * Returns a field without leading and trailing whitespace, as String.trim would.
+     *
+     * @param field Index of the field.
+     * @return Trimmed text of the field.
+     */
+    String trimmedField(int field) {
+        checkField(field);
+        int start = trimStart(starts[field], ends[field]);
+        int end = trimEnd(start, ends[field]);
+        return line.subSequence(start, end).toString();
+    }
+    /**
+     * Matches the trimmed field against a list of keywords without building a string.
+     *
+     * @param field    Index of the field.
+     * @param keywords Keywords to match, compared case-sensitively.
+     * @return The matching keyword, or null if none matches.
+     */
+    String keyword(int field, String[] keywords) {
+        checkField(field);
+        int start = trimStart(starts[field], ends[field]);
+        int end = trimEnd(start, ends[field]);
+        for (String keyword : keywords) {
+            if (regionEquals(start, end, keyword)) {
+                return keyword;
+            }
+        }
+        return null;
+    }
+    /**
+     * Parses a field as a decimal int, as Integer.parseInt would.
+     *
+     * @param field Index of the field.
+     * @return Value of the field.
+     */
+    int intField(int field) {
+        checkField(field);
+        return parseInt(starts[field], ends[field]);
+    }
+    /**
+     * Parses one part of a month/day/year field, as splitting the field
+     * on '/' and calling Integer.parseInt on the part would.
+     *
+     * @param field Index of the field.
+     * @param part  Index of the part: 0 for month, 1 for day, 2 for year.
+     * @return Value of the part.
+     */
+    int datePart(int field, int part) {
+        checkField(field);
+        return datePart(starts[field], ends[field], part);
+    }
+    /**
+     * Parses one part of a month/day/year field, as trimming the field, then
+     * splitting it on '/' and calling Integer.parseInt on the part would.
+     *
+     * @param field Index of the field.
+     * @param part  Index of the part: 0 for month, 1 for day, 2 for year.
+     * @return Value of the part.
+     */
+    int trimmedDatePart(int field, int part) {
+        checkField(field);
+        int start = trimStart(starts[field], ends[field]);
+        return datePart(start, trimEnd(start, ends[field]), part);
+    }
+    /**
+     * Counts the parts of a month/day/year field, as trimming the field, then
+     * splitting it on '/' would.
+     *
+     * @param field Index of the field.
+     * @return Number of parts.
+     */
+    int trimmedDateParts(int field) {
+        checkField(field);
+        int start = trimStart(starts[field], ends[field]);
+        return dateParts(start, trimEnd(start, ends[field]));
+    }
+    private int datePart(int start, int end, int part) {
+        int length = dateParts(start, end);
+        if (part >= length) {
+            throw new ArrayIndexOutOfBoundsException("Index " + part + " out of bounds for length " + length);
+        }
+        int partStart = start;
+        for (int i = 0; i < part; i++) {
+            partStart = indexOf('/', partStart, end) + 1;
+        }
+        int partEnd = indexOf('/', partStart, end);
+        return parseInt(partStart, partEnd);
+    }
+    /**
+     * Counts the parts between '/' of a region, without the trailing empty
+     * ones, unless the region has no '/' at all.
+     */
+    private int dateParts(int start, int end) {
+        int parts = 1;
+        int lastNonEmpty = 0;
+        int segmentStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || line.charAt(i) == '/') {
+                if (i > segmentStart) {
+                    lastNonEmpty = parts;
+                }
+                if (i < end) {
+                    parts++;
+                    segmentStart = i + 1;
+                }
+            }
+        }
+        return parts == 1 ? 1 : lastNonEmpty;
+    }
+    private int indexOf(char c, int from, int end) {
+        while (from < end && line.charAt(from) != c) {
+            from++;
+        }
+        return from;
+    }
+    private void checkField(int field) {
+        if (field >= count) {
+            throw new ArrayIndexOutOfBoundsException("Index " + field + " out of bounds for length " + count);
+        }
+    }
+    private int parseInt(int start, int end) {
+        int length = end - start;
+        if (length == 0 || length > MAX_FAST_DIGITS) {
+            return Integer.parseInt(line.subSequence(start, end).toString());
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9') {
+                // Signs, non-ASCII digits and bad input take the library path for identical results
+                return Integer.parseInt(line.subSequence(start, end).toString());
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+    private int trimStart(int start, int end) {
+        while (start < end && line.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+    private int trimEnd(int start, int end) {
+        while (end > start && line.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+    private boolean regionEquals(int start, int end, String text) {
+        if (end - start != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (line.charAt(start + i) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
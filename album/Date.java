@@ -1,27 +1,70 @@
 package album;
 
-import java.util.Calendar;
+import java.time.LocalDate;
+import java.time.ZoneId;
 
 public class Date implements Comparable<Date> {
-    private int year;
-    private int month; // 1-12 for January-December
-    private int day;
+    // Year, then 4 bits of month (1-12 for January-December), then 5 bits of day,
+    // so comparing dates is comparing ints. If a part does not fit its bits, the
+    // INVALID bit is set instead, over the parts clamped to the wider fields below
+    private final int packed;
 
     // Constants for date validation
     public static final int QUADRENNIAL = 4;
     public static final int CENTENNIAL = 100;
     public static final int QUATERCENTENNIAL = 400;
 
+    private static final int MONTH_SHIFT = 5;
+    private static final int YEAR_SHIFT = 9;
+    private static final int MAX_YEAR = (1 << 22) - 1;
+    private static final int INVALID = Integer.MIN_VALUE;
+    // Fields of an invalid date: clamped, its parts still compare with any real
+    // date's like the parts given, e.g. day 40 stays after the 31st
+    private static final int INVALID_MONTH_SHIFT = 6;
+    private static final int INVALID_YEAR_SHIFT = 10;
+    private static final int MAX_INVALID_DAY = (1 << INVALID_MONTH_SHIFT) - 1;
+    private static final int MAX_INVALID_YEAR = (1 << (31 - INVALID_YEAR_SHIFT)) - 1;
+    // Today's date and when it stops being today, refreshed at most once a day
+    private static volatile Today today = new Today(0, Long.MIN_VALUE);
+
     // Constructor
     public Date(int year, int month, int day) {
-        this.year = year;
-        this.month = month;
-        this.day = day;
+        if (year < 0 || year > MAX_YEAR || month < 0 || month > 15 || day < 0 || day > 31) {
+            // Outside any calendar, so it can never be valid
+            this.packed = INVALID | (clamp(year, MAX_INVALID_YEAR) << INVALID_YEAR_SHIFT)
+                    | (clamp(month, 15) << INVALID_MONTH_SHIFT) | clamp(day, MAX_INVALID_DAY);
+        } else {
+            this.packed = (year << YEAR_SHIFT) | (month << MONTH_SHIFT) | day;
+        }
+    }
+
+    private Date(int packed) {
+        this.packed = packed;
+    }
+
+    private static int clamp(int part, int max) {
+        return Math.max(0, Math.min(part, max));
+    }
+
+    private int year() {
+        return packed < 0 ? (packed & ~INVALID) >> INVALID_YEAR_SHIFT : packed >> YEAR_SHIFT;
+    }
+
+    private int month() {
+        return packed < 0 ? (packed >> INVALID_MONTH_SHIFT) & 0xF : (packed >> MONTH_SHIFT) & 0xF;
+    }
+
+    private int day() {
+        return packed < 0 ? packed & MAX_INVALID_DAY : packed & 0x1F;
     }
 
     // Check if the date is a valid calendar date
     public boolean isValid() {
-        if (year < 1900 || year > Calendar.getInstance().get(Calendar.YEAR)) return false;
+        if (packed < 0) return false;
+        int year = year();
+        int month = month();
+        int day = day();
+        if (year < 1900 || year > today().year) return false;
         if (month < 1 || month > 12) return false;
 
         int daysInMonth;
@@ -45,11 +88,7 @@ public class Date implements Comparable<Date> {
 
     @Override
     public int compareTo(Date other) {
-        if (this.year != other.year)
-            return this.year - other.year;
-        if (this.month != other.month)
-            return this.month - other.month;
-        return this.day - other.day;
+        return Integer.compare(this.packed, other.packed);
     }
 
     // Testbed main method
@@ -63,27 +102,78 @@ public class Date implements Comparable<Date> {
         System.out.println(new Date(2023, 1, 1).isValid()); // true - Valid start-of-year
     }
     public boolean isFutureDate() {
-        Calendar today = Calendar.getInstance();
-        int currentYear = today.get(Calendar.YEAR);
-        int currentMonth = today.get(Calendar.MONTH) + 1; // Calendar.MONTH is 0-based
-        int currentDay = today.get(Calendar.DAY_OF_MONTH);
-
-        if (this.year > currentYear) {
-            return true;
-        } else if (this.year == currentYear) {
-            if (this.month > currentMonth) {
-                return true;
-            } else if (this.month == currentMonth) {
-                return this.day > currentDay;
-            }
+        Today current = today();
+        if (packed >= 0) {
+            return packed > current.packed;
         }
-        return false;
+        // Compare part by part, as for a date that fits; clamping kept the answer
+        Date now = new Date(current.packed);
+        if (year() != now.year()) {
+            return year() > now.year();
+        }
+        if (month() != now.month()) {
+            return month() > now.month();
+        }
+        return day() > now.day();
     }
+
+    // The date of today in the default time zone. Looked up again only once the day is over,
+    // so validating a date costs one clock read instead of building a calendar
+    private static Today today() {
+        Today current = today;
+        long now = System.currentTimeMillis();
+        if (now >= current.endMillis) {
+            ZoneId zone = ZoneId.systemDefault();
+            LocalDate date = LocalDate.now(zone);
+            long end = date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+            current = new Today(new Date(date.getYear(), date.getMonthValue(), date.getDayOfMonth()).packed, end);
+            today = current;
+        }
+        return current;
+    }
+
+    // The packed form, e.g. for storage; equal dates pack to equal ints
+    int pack() {
+        return packed;
+    }
+
+    // Inverse of pack()
+    static Date unpack(int packed) {
+        return new Date(packed);
+    }
+
     public boolean isBefore1900() {
-        return this.year < 1900;
+        return year() < 1900;
     }
     @Override
     public String toString() {
-        return String.format("%02d", month) + "/" + String.format("%02d", day) + "/" + year;
+        return appendTo(new StringBuilder(10)).toString();
+    }
+
+    // Append the date as MM/DD/YYYY to the buffer
+    public StringBuilder appendTo(StringBuilder sb) {
+        appendTwoDigits(sb, month()).append('/');
+        return appendTwoDigits(sb, day()).append('/').append(year());
+    }
+
+    // Same padding as String.format("%02d", value)
+    private static StringBuilder appendTwoDigits(StringBuilder sb, int value) {
+        if (value >= 0 && value < 10) {
+            sb.append('0');
+        }
+        return sb.append(value);
+    }
+
+    // Packed date of today, with the time it stops being today
+    private static class Today {
+        final int packed;
+        final int year;
+        final long endMillis;
+
+        Today(int packed, long endMillis) {
+            this.packed = packed;
+            this.year = packed >> YEAR_SHIFT;
+            this.endMillis = endMillis;
+        }
     }
 }
@@ -1,4 +1,4 @@
-package album.;
+package album;
 
 public enum Genre {
     POP, CLASSICAL, JAZZ, COUNTRY, UNKNOWN;
@@ -0,0 +1,174 @@
+package album;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Cache of rendered listings, bounded by the total number of characters it
+ * holds and evicting the least recently used listing first. Each listing is
+ * stored with the version of the albums it shows; a lookup with a newer
+ * version misses and drops the stale text, so the cache never needs to be
+ * told about changes. Guarded by the cache's monitor.
+ */
+class ListingCache {
+    private final long capacity;
+    private final LinkedHashMap<String, Entry> entries;
+    private long chars;
+    private long hits;
+    private long misses;
+    /**
+     * Constructor for ListingCache class.
+     *
+     * @param capacity Number of characters to hold at most; 0 disables the cache.
+     */
+    ListingCache(long capacity) {
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true); // Access order, eldest first
+        this.chars = 0;
+    }
+    /**
+     * Getter for the character budget of the cache.
+     *
+     * @return Number of characters the cache holds at most.
+     */
+    long capacity() {
+        return capacity;
+    }
+    /**
+     * Looks up a listing rendered at a version.
+     *
+     * @param key     Name of the listing.
+     * @param version Current version of the albums it shows.
+     * @return The rendered listing, or null if it is missing or stale.
+     */
+    synchronized String get(String key, long version) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.version == version) {
+            hits++;
+            return entry.text;
+        }
+        if (entry != null) {
+            entries.remove(key);
+            chars -= entry.text.length();
+        }
+        misses++;
+        return null;
+    }
+    /**
+     * Stores a listing, evicting the least recently used ones to make room.
+     * A listing larger than the whole cache is not stored.
+     *
+     * @param key     Name of the listing.
+     * @param version Version of the albums it shows, read before rendering it.
+     * @param text    The rendered listing.
+     */
+    synchronized void put(String key, long version, String text) {
+        if (text.length() > capacity) {
+            return;
+        }
+        Entry old = entries.put(key, new Entry(version, text));
+        if (old != null) {
+            chars -= old.text.length();
+        }
+        chars += text.length();
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (chars > capacity) {
+            chars -= eldest.next().text.length();
+            eldest.remove();
+        }
+    }
+    /**
+     * Getter for number of lookups served from the cache.
+     *
+     * @return Number of hits.
+     */
+    synchronized long hits() {
+        return hits;
+    }
+    /**
+     * Getter for number of lookups that had to render the listing.
+     *
+     * @return Number of misses.
+     */
+    synchronized long misses() {
+        return misses;
+    }
+    /**
+     * Writer passing a listing through to its sink while keeping a copy for
+     * the cache, until the copy grows past a limit and is dropped.
+     */
+    static class Recorder extends Writer {
+        private final PrintWriter sink;
+        private final long limit;
+        private StringBuilder copy;
+
+        /**
+         * Constructor for Recorder class.
+         *
+         * @param sink  Sink the listing goes to.
+         * @param limit Number of characters to copy at most.
+         */
+        Recorder(PrintWriter sink, long limit) {
+            this.sink = sink;
+            this.limit = limit;
+            this.copy = new StringBuilder();
+        }
+
+        @Override
+        public void write(char[] chars, int from, int length) {
+            sink.write(chars, from, length);
+            if (copy != null) {
+                if (copy.length() + (long) length > limit) {
+                    copy = null;
+                } else {
+                    copy.append(chars, from, length);
+                }
+            }
+        }
+
+        @Override
+        public void write(String text, int from, int length) {
+            sink.write(text, from, length);
+            if (copy != null) {
+                if (copy.length() + (long) length > limit) {
+                    copy = null;
+                } else {
+                    copy.append(text, from, from + length);
+                }
+            }
+        }
+
+        @Override
+        public void flush() {
+            sink.flush();
+        }
+
+        @Override
+        public void close() {
+            // The sink outlives the listing
+        }
+
+        /**
+         * Getter for the copy of everything written.
+         *
+         * @return The copy, or null if it outgrew the limit.
+         */
+        String recorded() {
+            return copy == null ? null : copy.toString();
+        }
+    }
+    /**
+     * Rendered listing with the version it shows.
+     */
+    private static class Entry {
+        final long version;
+        final String text;
+
+        Entry(long version, String text) {
+            this.version = version;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package album;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Local load generator for CollectionServer. Opens many sessions at once,
+ * each sending commands one at a time and waiting for the reply line, and
+ * reports throughput and latency percentiles. Most commands rate a few
+ * shared albums, the rest add albums of the session's own.
+ * <p>
+ * Usage: LoadGenerator [sessions] [commands per session] [port]. Without a
+ * port it starts a server in the same JVM.
+ */
+public class LoadGenerator {
+    private static final int HOT_ALBUMS = 8;
+    private static final String[] GENRES = {"Pop", "Country", "Classical", "Jazz"};
+
+    public static void main(String[] args) throws Exception {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int commands = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        CollectionServer server = null;
+        int port;
+        if (args.length > 2) {
+            port = Integer.parseInt(args[2]);
+        } else {
+            server = new CollectionServer(new Collection(), 0);
+            port = server.getPort();
+        }
+        try {
+            run(port, sessions, commands);
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    private static void run(int port, int sessions, int commands) throws Exception {
+        // Albums every session rates
+        String[] hot = new String[HOT_ALBUMS];
+        for (int i = 0; i < hot.length; i++) {
+            hot[i] = "Hot " + i + ",Load Artist";
+        }
+        new Session(port, -1, 0).setUp(hot);
+        ExecutorService threads = CollectionServer.sessionExecutor();
+        List<Future<long[]>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int s = 0; s < sessions; s++) {
+            Session session = new Session(port, s, commands);
+            results.add(threads.submit(() -> session.run(hot)));
+        }
+        long[] latencies = new long[sessions * commands];
+        int n = 0;
+        for (Future<long[]> result : results) {
+            long[] session = result.get();
+            System.arraycopy(session, 0, latencies, n, session.length);
+            n += session.length;
+        }
+        long elapsed = System.nanoTime() - start;
+        threads.shutdown();
+        Arrays.sort(latencies, 0, n);
+        System.out.printf("%d sessions, %d commands in %.2f s: %.0f commands/s%n",
+                sessions, n, elapsed / 1e9, n / (elapsed / 1e9));
+        System.out.printf("latency p50 %d us, p99 %d us, max %d us%n",
+                latencies[n / 2] / 1000, latencies[(int) (n * 0.99)] / 1000, latencies[n - 1] / 1000);
+    }
+
+    /**
+     * One client connection, sending a command and reading its one reply line at a time.
+     */
+    private static class Session {
+        private final int port;
+        private final int id;
+        private final int commands;
+
+        Session(int port, int id, int commands) {
+            this.port = port;
+            this.id = id;
+            this.commands = commands;
+        }
+
+        void setUp(String[] hot) throws IOException {
+            try (Socket socket = connect()) {
+                BufferedReader in = reader(socket);
+                PrintWriter out = writer(socket);
+                in.readLine();
+                for (String album : hot) {
+                    send(out, "A," + album + ",1/1/1970,Pop,1/1/2000");
+                    in.readLine();
+                }
+                quit(in, out);
+            }
+        }
+
+        long[] run(String[] hot) throws IOException {
+            long[] latencies = new long[commands];
+            try (Socket socket = connect()) {
+                BufferedReader in = reader(socket);
+                PrintWriter out = writer(socket);
+                in.readLine();
+                for (int i = 0; i < commands; i++) {
+                    String command;
+                    if (i % 10 == 0) {
+                        command = "A,Session " + id + " Album " + i + ",Load Artist " + id + ",1/1/1970,"
+                                + GENRES[i % GENRES.length] + ",1/1/2000";
+                    } else {
+                        command = "R," + hot[(id + i) % hot.length] + ",1/1/1970," + (1 + (id + i) % 5);
+                    }
+                    long sent = System.nanoTime();
+                    send(out, command);
+                    if (in.readLine() == null) {
+                        throw new IOException("Server closed session " + id);
+                    }
+                    latencies[i] = System.nanoTime() - sent;
+                }
+                quit(in, out);
+            }
+            return latencies;
+        }
+
+        private Socket connect() throws IOException {
+            Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            socket.setTcpNoDelay(true);
+            return socket;
+        }
+
+        private static BufferedReader reader(Socket socket) throws IOException {
+            return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        }
+
+        private static PrintWriter writer(Socket socket) throws IOException {
+            return new PrintWriter(new BufferedWriter(new OutputStreamWriter(
+                    socket.getOutputStream(), StandardCharsets.UTF_8)));
+        }
+
+        private static void send(PrintWriter out, String command) {
+            out.print(command);
+            out.print('\n');
+            out.flush();
+        }
+
+        private static void quit(BufferedReader in, PrintWriter out) throws IOException {
+            send(out, "Q");
+            in.readLine();
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package album;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+
+/**
+ * Ordered index kept as an AVL tree, so that inserts and removals cost
+ * O(log n) and listing the elements in order is a plain in-order walk.
+ * The comparator must be a total order over the indexed elements.
+ * <p>
+ * Nodes are never modified once built: a change copies the O(log n) nodes
+ * on its path and publishes the new root with a compare-and-set. A writer
+ * that loses the race to another change copies its path again from the
+ * new root, so no writer ever waits for another, and each change is
+ * applied exactly once. Readers take no lock and walk whichever root they
+ * started from, so every listing sees one consistent version of the order.
+ * The comparator must only read state of an element that never changes
+ * while it is indexed, as concurrent writers compare it at any time.
+ *
+ * @param <I> Type of the indexed elements.
+ */
+class OrderedIndex<I> implements Iterable<I> {
+    private final Collection.Comparator<I> comparer;
+    private final AtomicReference<Node<I>> root;
+    /**
+     * Constructor for OrderedIndex class.
+     *
+     * @param comparer Total order of the index.
+     */
+    OrderedIndex(Collection.Comparator<I> comparer) {
+        this.comparer = comparer;
+        this.root = new AtomicReference<>();
+    }
+    /**
+     * Getter for number of indexed elements.
+     *
+     * @return Number of indexed elements.
+     */
+    int size() {
+        return count(root.get());
+    }
+    /**
+     * Adds element to the index.
+     *
+     * @param item Element to add.
+     * @return True if the element was added, false if an equal one is already indexed.
+     */
+    boolean insert(I item) {
+        while (true) {
+            Node<I> current = root.get();
+            Node<I> updated = insert(current, item);
+            if (updated == current) {
+                return false;
+            }
+            if (root.compareAndSet(current, updated)) {
+                return true;
+            }
+        }
+    }
+    /**
+     * Removes element from the index.
+     *
+     * @param item Element to remove.
+     * @return True if the element was removed, false if it was not indexed.
+     */
+    boolean remove(I item) {
+        while (true) {
+            Node<I> current = root.get();
+            Node<I> updated = remove(current, item);
+            if (updated == current) {
+                return false;
+            }
+            if (root.compareAndSet(current, updated)) {
+                return true;
+            }
+        }
+    }
+    /**
+     * Replaces an indexed element with another one, e.g. the same album
+     * under its new rating, in one change. Readers see either the old
+     * element or the new one, never neither nor both.
+     *
+     * @param item        Indexed element to take out.
+     * @param replacement Element to put in its place in the order.
+     * @return True if the element was replaced, false if it was not indexed.
+     */
+    boolean replace(I item, I replacement) {
+        while (true) {
+            Node<I> current = root.get();
+            Node<I> without = remove(current, item);
+            if (without == current) {
+                return false;
+            }
+            if (root.compareAndSet(current, insert(without, replacement))) {
+                return true;
+            }
+        }
+    }
+    /**
+     * Replaces the contents of the index with already sorted elements,
+     * building a perfectly balanced tree in O(n). Changes made meanwhile are lost,
+     * so only rebuild an index no other thread is changing.
+     *
+     * @param sorted Distinct elements in index order.
+     * @param n      Number of elements to take from the array.
+     */
+    void rebuild(I[] sorted, int n) {
+        root.set(build(sorted, 0, n));
+    }
+    private Node<I> build(I[] sorted, int from, int to) {
+        if (from >= to) {
+            return null;
+        }
+        int mid = (from + to) >>> 1;
+        return new Node<>(sorted[mid], build(sorted, from, mid), build(sorted, mid + 1, to));
+    }
+    private Node<I> insert(Node<I> node, I item) {
+        if (node == null) {
+            return new Node<>(item, null, null);
+        }
+        int cmp = comparer.compare(item, node.item);
+        if (cmp < 0) {
+            Node<I> left = insert(node.left, item);
+            return left == node.left ? node : balance(node.item, left, node.right);
+        }
+        if (cmp > 0) {
+            Node<I> right = insert(node.right, item);
+            return right == node.right ? node : balance(node.item, node.left, right);
+        }
+        return node;
+    }
+    private Node<I> remove(Node<I> node, I item) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = comparer.compare(item, node.item);
+        if (cmp < 0) {
+            Node<I> left = remove(node.left, item);
+            return left == node.left ? node : balance(node.item, left, node.right);
+        }
+        if (cmp > 0) {
+            Node<I> right = remove(node.right, item);
+            return right == node.right ? node : balance(node.item, node.left, right);
+        }
+        if (node.left == null) {
+            return node.right;
+        }
+        if (node.right == null) {
+            return node.left;
+        }
+        // Replace with the in-order successor, then unlink the successor
+        Node<I> successor = node.right;
+        while (successor.left != null) {
+            successor = successor.left;
+        }
+        return balance(successor.item, node.left, removeMin(node.right));
+    }
+    private Node<I> removeMin(Node<I> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        return balance(node.item, removeMin(node.left), node.right);
+    }
+    /**
+     * Builds a node from subtrees whose heights differ by at most two,
+     * rotating as needed to restore the AVL balance.
+     */
+    private Node<I> balance(I item, Node<I> left, Node<I> right) {
+        int leftHeight = height(left);
+        int rightHeight = height(right);
+        if (leftHeight > rightHeight + 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new Node<>(left.item, left.left, new Node<>(item, left.right, right));
+            }
+            Node<I> pivot = left.right;
+            return new Node<>(pivot.item, new Node<>(left.item, left.left, pivot.left),
+                    new Node<>(item, pivot.right, right));
+        }
+        if (rightHeight > leftHeight + 1) {
+            if (height(right.right) >= height(right.left)) {
+                return new Node<>(right.item, new Node<>(item, left, right.left), right.right);
+            }
+            Node<I> pivot = right.left;
+            return new Node<>(pivot.item, new Node<>(item, left, pivot.left),
+                    new Node<>(right.item, pivot.right, right.right));
+        }
+        return new Node<>(item, left, right);
+    }
+    private static int height(Node<?> node) {
+        return node == null ? 0 : node.height;
+    }
+    /**
+     * Returns iterator walking the elements in index order, as of this call.
+     *
+     * @return In-order iterator.
+     */
+    @Override
+    public Iterator<I> iterator() {
+        Node<I> start = root.get();
+        InOrder<I> walk = new InOrder<>(height(start));
+        walk.pushLeft(start);
+        return walk;
+    }
+    /**
+     * Returns iterator walking the elements in index order, as of this call,
+     * starting at the first element that is not before a bound. Seeking the
+     * start costs O(log n), so walking k elements from it costs O(log n + k).
+     *
+     * @param before Test that holds for the elements before the start and for
+     *               no later element, i.e. for a prefix of the index order.
+     * @return In-order iterator from the start.
+     */
+    Iterator<I> iteratorFrom(Predicate<? super I> before) {
+        Node<I> node = root.get();
+        InOrder<I> walk = new InOrder<>(height(node));
+        while (node != null) {
+            if (before.test(node.item)) {
+                node = node.right;
+            } else {
+                // Pending: this node and whatever follows it in its right subtree
+                walk.push(node);
+                node = node.left;
+            }
+        }
+        return walk;
+    }
+    /**
+     * Returns iterator walking the elements in index order, as of this call,
+     * starting at a position of the order. Nodes know the size of their
+     * subtree, so seeking the start costs O(log n) rather than O(offset).
+     *
+     * @param offset Number of elements to skip from the start of the order.
+     * @return In-order iterator from the offset, empty if it is past the end.
+     */
+    Iterator<I> iteratorAt(int offset) {
+        Node<I> node = root.get();
+        InOrder<I> walk = new InOrder<>(height(node));
+        int skip = offset;
+        while (node != null) {
+            int leftCount = count(node.left);
+            if (skip < leftCount) {
+                // Pending: this node and whatever follows it in its right subtree
+                walk.push(node);
+                node = node.left;
+            } else if (skip == leftCount) {
+                walk.push(node);
+                break;
+            } else {
+                skip -= leftCount + 1;
+                node = node.right;
+            }
+        }
+        return walk;
+    }
+    private static int count(Node<?> node) {
+        return node == null ? 0 : node.count;
+    }
+    /**
+     * Immutable tree node holding one element.
+     */
+    private static class Node<I> {
+        final I item;
+        final Node<I> left;
+        final Node<I> right;
+        final int height;
+        final int count; // Elements in the subtree rooted here
+
+        Node(I item, Node<I> left, Node<I> right) {
+            this.item = item;
+            this.left = left;
+            this.right = right;
+            this.height = Math.max(height(left), height(right)) + 1;
+            this.count = count(left) + count(right) + 1;
+        }
+    }
+    /**
+     * In-order iterator using an explicit stack of pending ancestors.
+     */
+    private static class InOrder<I> implements Iterator<I> {
+        private final Object[] stack;
+        private int top;
+
+        InOrder(int height) {
+            stack = new Object[height];
+            top = 0;
+        }
+
+        void push(Node<I> node) {
+            stack[top++] = node;
+        }
+
+        void pushLeft(Node<I> node) {
+            while (node != null) {
+                stack[top++] = node;
+                node = node.left;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return top > 0;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public I next() {
+            if (top == 0) {
+                throw new NoSuchElementException();
+            }
+            Node<I> node = (Node<I>) stack[--top];
+            stack[top] = null;
+            pushLeft(node.right);
+            return node.item;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package album;
+
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Parallel rendering of long listings on the common fork-join pool. Albums
+ * are taken in listing order in batches, each batch is rendered into its own
+ * buffer by a separate task, and the buffers are written out in batch order,
+ * so the output is byte-identical to rendering on one thread. Only a few
+ * batches per pool thread are in flight at once, so memory stays
+ * proportional to the pool, not to the listing.
+ */
+class ParallelListing {
+    /**
+     * Listings shorter than this render on the calling thread, where handing
+     * batches to the pool would cost more than it saves.
+     */
+    static final int MIN_ITEMS = 1 << 14;
+    private static final int BATCH = 1 << 10;
+    /**
+     * Renderer of one item of a listing.
+     *
+     * @param <T> Type of the listed items.
+     */
+    interface Renderer<T> {
+        /**
+         * Appends the line of an item, without its line separator. Called from
+         * pool threads, so it must only read state that stays put during the listing.
+         *
+         * @param item Item to render.
+         * @param sb   Buffer to append to.
+         */
+        void appendTo(T item, StringBuilder sb);
+    }
+    private ParallelListing() {
+    }
+    /**
+     * Checks if a listing is long enough, and the pool wide enough, for parallel work to pay off.
+     *
+     * @param items Number of items in the listing.
+     * @return True to list in parallel.
+     */
+    static boolean worthwhile(int items) {
+        return items >= MIN_ITEMS && ForkJoinPool.getCommonPoolParallelism() > 1;
+    }
+    /**
+     * Prints every item of an iterator, one per line, rendering in parallel.
+     *
+     * @param items    Items in listing order; only read from the calling thread.
+     * @param renderer Renderer of one item.
+     * @param out      Sink to print to.
+     * @param <T>      Type of the listed items.
+     * @return Number of items printed.
+     */
+    static <T> int print(Iterator<T> items, Renderer<? super T> renderer, PrintWriter out) {
+        String newLine = System.lineSeparator();
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int inFlight = 2 * pool.getParallelism();
+        ArrayDeque<ForkJoinTask<String>> pending = new ArrayDeque<>();
+        int printed = 0;
+        while (items.hasNext()) {
+            Object[] batch = new Object[BATCH];
+            int n = 0;
+            while (n < BATCH && items.hasNext()) {
+                batch[n++] = items.next();
+            }
+            int count = n;
+            pending.add(pool.submit(() -> {
+                StringBuilder lines = new StringBuilder();
+                for (int i = 0; i < count; i++) {
+                    @SuppressWarnings("unchecked")
+                    T item = (T) batch[i];
+                    renderer.appendTo(item, lines);
+                    lines.append(newLine);
+                }
+                return lines.toString();
+            }));
+            printed += count;
+            if (pending.size() >= inFlight) {
+                out.write(pending.poll().join());
+            }
+        }
+        while (!pending.isEmpty()) {
+            out.write(pending.poll().join());
+        }
+        return printed;
+    }
+}
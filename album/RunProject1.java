@@ -1,10 +1,36 @@
-package album.album;
+package album;
 
-import album.album.CollectionManager;
+import java.io.IOException;
+import java.nio.file.Paths;
 
 public class RunProject1 {
 
-    public static void main(String[] args) {
-        new CollectionManager().run();
+    // Any arguments are command files bulk imported before reading standard input.
+    // With -Dalbum.data=<directory> the collection is recovered from and logged to that directory.
+    // With -Dalbum.port=<port> the collection is also served over local TCP until the console quits.
+    public static void main(String[] args) throws IOException {
+        String data = System.getProperty("album.data");
+        if (data == null) {
+            run(new CollectionManager(), args);
+            return;
+        }
+        try (CollectionStore store = CollectionStore.open(Paths.get(data))) {
+            run(new CollectionManager(store.collection()), args);
+        }
+    }
+
+    private static void run(CollectionManager manager, String[] args) throws IOException {
+        for (String file : args) {
+            manager.importFile(Paths.get(file));
+        }
+        String port = System.getProperty("album.port");
+        if (port == null) {
+            manager.run();
+            return;
+        }
+        CollectionServer server = new CollectionServer(manager.getCollection(), Integer.parseInt(port));
+        try (server) {
+            manager.run();
+        }
     }
 }
@@ -0,0 +1,161 @@
+package album;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Search structures over album titles and artist names, ignoring case:
+ * ordered indexes for prefix queries and trigram indexes for typo-tolerant
+ * ones. Artists are indexed once each, however many albums they have, and
+ * their albums are then found through the collection's discographies.
+ */
+class SearchIndex {
+    /**
+     * Order of titles ignoring case; ties broken on the exact strings, so
+     * distinct albums never compare equal.
+     */
+    private static final Collection.Comparator<Album> BY_TITLE = (x, y) -> {
+        int titleCompare = String.CASE_INSENSITIVE_ORDER.compare(x.getTitle(), y.getTitle());
+        if (titleCompare != 0) {
+            return titleCompare;
+        }
+        titleCompare = x.getTitle().compareTo(y.getTitle());
+        if (titleCompare != 0) {
+            return titleCompare;
+        }
+        return x.getArtist().getName().compareTo(y.getArtist().getName());
+    };
+    /**
+     * Order of artist names ignoring case, the identity of a discography.
+     */
+    private static final Collection.Comparator<Artist> BY_NAME =
+            (x, y) -> String.CASE_INSENSITIVE_ORDER.compare(x.getName(), y.getName());
+    private final OrderedIndex<Album> titles;
+    private final OrderedIndex<Artist> artistNames;
+    private final TrigramIndex<Album> titleTrigrams;
+    private final TrigramIndex<Artist> artistTrigrams;
+    /**
+     * Constructor for SearchIndex class.
+     */
+    SearchIndex() {
+        titles = new OrderedIndex<>(BY_TITLE);
+        artistNames = new OrderedIndex<>(BY_NAME);
+        titleTrigrams = new TrigramIndex<>(Album::getTitle);
+        artistTrigrams = new TrigramIndex<>(Artist::getName);
+    }
+    /**
+     * Fills the empty index at once, sorting each order in one go rather than
+     * inserting item by item, e.g. when a collection is reloaded.
+     *
+     * @param albums  Albums to index, from the start of the array.
+     * @param n       Number of albums.
+     * @param artists Distinct artists of the albums.
+     */
+    void restore(Album[] albums, int n, List<Artist> artists) {
+        Album[] byTitle = Arrays.copyOf(albums, n);
+        Arrays.sort(byTitle, BY_TITLE::compare);
+        titles.rebuild(byTitle, n);
+        Artist[] byName = artists.toArray(new Artist[0]);
+        Arrays.sort(byName, BY_NAME::compare);
+        artistNames.rebuild(byName, byName.length);
+        titleTrigrams.addAll(Arrays.asList(byTitle));
+        artistTrigrams.addAll(Arrays.asList(byName));
+    }
+    void addAlbum(Album album) {
+        titles.insert(album);
+        titleTrigrams.add(album);
+    }
+    void removeAlbum(Album album) {
+        titles.remove(album);
+        titleTrigrams.remove(album);
+    }
+    void addArtist(Artist artist) {
+        artistNames.insert(artist);
+        artistTrigrams.add(artist);
+    }
+    /**
+     * Removes an artist, which may be a different instance with the same name
+     * than the one that was added; the indexed one is looked up by name.
+     *
+     * @param artist Artist to remove.
+     */
+    void removeArtist(Artist artist) {
+        Artist indexed = artistNamed(artist.getName());
+        if (indexed != null) {
+            artistNames.remove(indexed);
+            artistTrigrams.remove(indexed);
+        }
+    }
+    /**
+     * Looks up the indexed artist with a name, ignoring case.
+     *
+     * @param name Name of the artist.
+     * @return The artist, or null if no album is by an artist of that name.
+     */
+    Artist artistNamed(String name) {
+        Iterator<Artist> from = artistsFrom(name);
+        Artist indexed = from.hasNext() ? from.next() : null;
+        return indexed != null && indexed.getName().equalsIgnoreCase(name) ? indexed : null;
+    }
+    /**
+     * Albums whose title starts with a prefix, ignoring case, in title order.
+     * Stop at the first album for which startsWith fails.
+     *
+     * @param prefix Start of the title.
+     * @return Iterator from the first title not before the prefix.
+     */
+    Iterator<Album> titlesFrom(String prefix) {
+        return titles.iteratorFrom(album -> String.CASE_INSENSITIVE_ORDER.compare(album.getTitle(), prefix) < 0);
+    }
+    /**
+     * Artists whose name starts with a prefix, ignoring case, in name order.
+     * Stop at the first artist for which startsWith fails.
+     *
+     * @param prefix Start of the name.
+     * @return Iterator from the first name not before the prefix.
+     */
+    Iterator<Artist> artistsFrom(String prefix) {
+        return artistNames.iteratorFrom(artist -> String.CASE_INSENSITIVE_ORDER.compare(artist.getName(), prefix) < 0);
+    }
+    /**
+     * Albums whose title starts with something a few typos away from the query.
+     *
+     * @param query    Text to look for.
+     * @param maxEdits Typos allowed; see allowedEdits.
+     * @return Matching albums, closest first.
+     */
+    List<Album> titlesLike(String query, int maxEdits) {
+        return titleTrigrams.search(query, maxEdits);
+    }
+    /**
+     * Artists whose name starts with something a few typos away from the query.
+     *
+     * @param query    Text to look for.
+     * @param maxEdits Typos allowed; see allowedEdits.
+     * @return Matching artists, closest first.
+     */
+    List<Artist> artistsLike(String query, int maxEdits) {
+        return artistTrigrams.search(query, maxEdits);
+    }
+    /**
+     * Typos tolerated in a query: none below 4 characters, where almost
+     * anything is a typo or two away, one up to 7, and two from 8 on.
+     *
+     * @param query Text to look for.
+     * @return Number of edits to allow.
+     */
+    static int allowedEdits(String query) {
+        return query.length() < 4 ? 0 : query.length() < 8 ? 1 : 2;
+    }
+    /**
+     * Checks if a text starts with a prefix, ignoring case.
+     *
+     * @param text   Text to check.
+     * @param prefix Prefix to look for.
+     * @return True if the text starts with the prefix.
+     */
+    static boolean startsWith(String text, String prefix) {
+        return text.regionMatches(true, 0, prefix, 0, prefix.length());
+    }
+}
@@ -0,0 +1,399 @@
+package album;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Inverted index from the positional trigrams of a text, ignoring case, to
+ * the items with that text, for typo-tolerant prefix search. A text is
+ * padded at its start, so its i-th trigram ends at its i-th character, and
+ * one edit changes at most three trigrams and shifts the later ones by one
+ * position. A query within d edits of the start of a text therefore shares
+ * all but 3d of its trigrams with the text, each within d positions of its
+ * own, so the candidates can be drawn from the 3d + 1 rarest of those
+ * position windows alone, then verified. Only the first POSITIONS trigrams
+ * of a text are indexed: queries match the start of texts, and a longer
+ * query draws its candidates from its first POSITIONS - d trigrams, still
+ * well over the 3d + 1 needed.
+ * <p>
+ * Postings are hash sets of the indexed instances themselves, so an item
+ * must be removed with the same instance it was added with. A posting is
+ * dropped when its last item is removed. They are found through lock
+ * stripes of open-addressing tables keyed by the trigram itself, so that
+ * indexing a text boxes no keys and allocates nothing but new postings.
+ *
+ * @param <T> Type of the indexed items.
+ */
+class TrigramIndex<T> {
+    private static final int POSITIONS = 16;
+    private static final int STRIPES = 64;
+    private static final int STRIPE_SHIFT = 58; // top 6 bits of a spread key pick the stripe
+    private final PostingTable[] postings;
+    private final Function<? super T, String> textOf;
+    /**
+     * Constructor for TrigramIndex class.
+     *
+     * @param textOf Text of an item, the same one it is added and removed with.
+     */
+    TrigramIndex(Function<? super T, String> textOf) {
+        this.postings = new PostingTable[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            postings[i] = new PostingTable();
+        }
+        this.textOf = textOf;
+    }
+    /**
+     * Indexes an item under the trigrams of its text.
+     *
+     * @param item Item to index.
+     */
+    void add(T item) {
+        for (long key : keys(textOf.apply(item), POSITIONS)) {
+            long spread = spread(key);
+            tableOf(spread).add(spread, item);
+        }
+    }
+    /**
+     * Indexes many items at once, grouping them by trigram first so each
+     * posting is sized for its items up front rather than grown one by one.
+     *
+     * @param items Items to index.
+     */
+    void addAll(List<? extends T> items) {
+        HashMap<Long, List<T>> groups = new HashMap<>();
+        for (T item : items) {
+            for (long key : keys(textOf.apply(item), POSITIONS)) {
+                groups.computeIfAbsent(spread(key), k -> new ArrayList<>()).add(item);
+            }
+        }
+        for (Map.Entry<Long, List<T>> group : groups.entrySet()) {
+            long spread = group.getKey();
+            tableOf(spread).addAll(spread, group.getValue());
+        }
+    }
+    /**
+     * Removes an item from the index.
+     *
+     * @param item The instance that was added.
+     */
+    void remove(T item) {
+        for (long key : keys(textOf.apply(item), POSITIONS)) {
+            long spread = spread(key);
+            tableOf(spread).remove(spread, item);
+        }
+    }
+    /**
+     * Finds the items whose text starts with a string at most some edits
+     * (insertions, deletions or substitutions) away from the query.
+     *
+     * @param query    Text to look for, in any case.
+     * @param maxEdits Edits allowed; the query must be longer than three times this.
+     * @return Matching items, closest first.
+     */
+    List<T> search(String query, int maxEdits) {
+        // A trigram of the query may sit up to maxEdits positions later in a match
+        long[] keys = keys(query, POSITIONS - maxEdits);
+        if (keys.length <= 3 * maxEdits) {
+            throw new IllegalArgumentException("Query too short for " + maxEdits + " edits.");
+        }
+        Posting[][] windows = new Posting[keys.length][];
+        int[] sizes = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            int from = Math.max(0, i - maxEdits);
+            windows[i] = new Posting[i + maxEdits + 1 - from];
+            for (int position = from; position <= i + maxEdits; position++) {
+                long spread = spread(keys[i] - ((long) i << 48) + ((long) position << 48));
+                Posting posting = tableOf(spread).get(spread);
+                windows[i][position - from] = posting != null ? posting : Posting.EMPTY;
+                sizes[i] += windows[i][position - from].size(); // Read once, as postings keep changing
+            }
+        }
+        // Any match is in at least one of the 3d + 1 rarest windows
+        Set<Object> candidates = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int picked = 0; picked < 3 * maxEdits + 1; picked++) {
+            int rarest = picked;
+            for (int i = picked + 1; i < windows.length; i++) {
+                if (sizes[i] < sizes[rarest]) {
+                    rarest = i;
+                }
+            }
+            for (Posting posting : windows[rarest]) {
+                posting.copyTo(candidates);
+            }
+            windows[rarest] = windows[picked];
+            sizes[rarest] = sizes[picked];
+        }
+        List<List<T>> byEdits = new ArrayList<>();
+        for (int edits = 0; edits <= maxEdits; edits++) {
+            byEdits.add(new ArrayList<>());
+        }
+        for (Object candidate : candidates) {
+            @SuppressWarnings("unchecked")
+            T item = (T) candidate;
+            int edits = prefixDistance(query, textOf.apply(item), maxEdits);
+            if (edits <= maxEdits) {
+                byEdits.get(edits).add(item);
+            }
+        }
+        List<T> matches = new ArrayList<>();
+        for (List<T> same : byEdits) {
+            matches.addAll(same);
+        }
+        return matches;
+    }
+    /**
+     * Keys of the first trigrams of a text padded at its start: the position
+     * in the top bits, then three folded chars.
+     */
+    private static long[] keys(String text, int positions) {
+        long[] keys = new long[Math.min(text.length(), positions)];
+        long window = 0;
+        for (int i = 0; i < keys.length; i++) {
+            window = ((window << 16) | fold(text.charAt(i))) & 0xFFFF_FFFF_FFFFL;
+            keys[i] = ((long) i << 48) | window;
+        }
+        return keys;
+    }
+    /**
+     * Scrambles a key one to one, as a raw key has the position and first
+     * char in its top bits and would crowd a few stripes and slots. Only the
+     * high bits of the product mix every bit of the key, so stripes and
+     * slots are picked from those.
+     */
+    private static long spread(long key) {
+        return key * 0x9E3779B97F4A7C15L;
+    }
+    private PostingTable tableOf(long spread) {
+        return postings[(int) (spread >>> STRIPE_SHIFT)];
+    }
+    /**
+     * Folds case the way equalsIgnoreCase does.
+     */
+    private static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+    /**
+     * Fewest edits turning the query into some prefix of the text, ignoring case,
+     * or maxEdits + 1 if that takes more than maxEdits.
+     */
+    static int prefixDistance(String query, String text, int maxEdits) {
+        int columns = Math.min(text.length(), query.length() + maxEdits);
+        int[] previous = new int[columns + 1];
+        int[] current = new int[columns + 1];
+        for (int j = 0; j <= columns; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= query.length(); i++) {
+            char q = fold(query.charAt(i - 1));
+            current[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= columns; j++) {
+                int substitute = previous[j - 1] + (q == fold(text.charAt(j - 1)) ? 0 : 1);
+                current[j] = Math.min(substitute, Math.min(previous[j], current[j - 1]) + 1);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > maxEdits) {
+                return maxEdits + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        // The query is used up; the rest of the text is a free suffix
+        int best = maxEdits + 1;
+        for (int j = 0; j <= columns; j++) {
+            best = Math.min(best, previous[j]);
+        }
+        return best;
+    }
+    /**
+     * One lock stripe of the postings: an open-addressing table from spread
+     * key to posting, guarded by the table's monitor. A posting is changed
+     * while holding its table, so a remove cannot drop a posting an add is
+     * about to fill.
+     */
+    private static class PostingTable {
+        private static final int INITIAL_SLOTS = 16;
+        private long[] keys;
+        private Posting[] values; // Null in the empty slots
+        private int size;
+
+        PostingTable() {
+            keys = new long[INITIAL_SLOTS];
+            values = new Posting[INITIAL_SLOTS];
+        }
+
+        synchronized Posting get(long key) {
+            return values[find(key)];
+        }
+
+        synchronized void add(long key, Object item) {
+            postingOf(key, 0).add(item);
+        }
+
+        synchronized void addAll(long key, List<?> items) {
+            Posting posting = postingOf(key, items.size());
+            for (Object item : items) {
+                posting.add(item);
+            }
+        }
+
+        synchronized void remove(long key, Object item) {
+            int slot = find(key);
+            Posting posting = values[slot];
+            if (posting == null) {
+                return;
+            }
+            posting.remove(item);
+            if (posting.size() > 0) {
+                return;
+            }
+            size--;
+            // Linear probing: shift back later entries that would no longer be reachable
+            int mask = keys.length - 1;
+            int hole = slot;
+            for (int next = (hole + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+                int home = home(keys[next], mask);
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    keys[hole] = keys[next];
+                    values[hole] = values[next];
+                    hole = next;
+                }
+            }
+            values[hole] = null;
+        }
+
+        /**
+         * Posting of a key, added with room for some items if there is none yet.
+         */
+        private Posting postingOf(long key, int items) {
+            int slot = find(key);
+            if (values[slot] == null) {
+                if (size + 1 > keys.length >> 1) {
+                    grow();
+                    slot = find(key);
+                }
+                keys[slot] = key;
+                values[slot] = items > 0 ? new Posting(items) : new Posting();
+                size++;
+            }
+            return values[slot];
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            Posting[] oldValues = values;
+            keys = new long[oldKeys.length << 1];
+            values = new Posting[oldKeys.length << 1];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != null) {
+                    int slot = find(oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        /**
+         * Slot holding the key, or the empty slot where it would go.
+         */
+        private int find(long key) {
+            int mask = keys.length - 1;
+            int slot = home(key, mask);
+            while (values[slot] != null && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private static int home(long key, int mask) {
+            return (int) (key >>> 32) & mask;
+        }
+    }
+    /**
+     * Items sharing one positional trigram, as an open-addressing identity
+     * set so that removal costs O(1), guarded by the posting's monitor.
+     */
+    private static class Posting {
+        static final Posting EMPTY = new Posting();
+        private static final int INITIAL_SLOTS = 4;
+        private Object[] slots;
+        private int size;
+
+        Posting() {
+            slots = new Object[INITIAL_SLOTS];
+        }
+
+        /**
+         * Posting with room for some items at half load, where probes stay short.
+         */
+        Posting(int items) {
+            slots = new Object[Math.max(INITIAL_SLOTS, Integer.highestOneBit(Math.max(1, items)) << 2)];
+        }
+
+        synchronized void add(Object item) {
+            if (size + 1 > slots.length - (slots.length >> 2)) {
+                Object[] old = slots;
+                slots = new Object[old.length << 1];
+                for (Object kept : old) {
+                    if (kept != null) {
+                        slots[find(kept)] = kept;
+                    }
+                }
+            }
+            int slot = find(item);
+            if (slots[slot] == null) {
+                slots[slot] = item;
+                size++;
+            }
+        }
+
+        synchronized void remove(Object item) {
+            int hole = find(item);
+            if (slots[hole] == null) {
+                return;
+            }
+            size--;
+            // Linear probing: shift back later entries that would no longer be reachable
+            int mask = slots.length - 1;
+            for (int next = (hole + 1) & mask; slots[next] != null; next = (next + 1) & mask) {
+                int home = System.identityHashCode(slots[next]) & mask;
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    slots[hole] = slots[next];
+                    hole = next;
+                }
+            }
+            slots[hole] = null;
+        }
+
+        /**
+         * Slot holding the item, or the empty slot where it would go.
+         */
+        private int find(Object item) {
+            int mask = slots.length - 1;
+            int slot = System.identityHashCode(item) & mask;
+            while (slots[slot] != null && slots[slot] != item) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized void copyTo(Set<Object> target) {
+            for (Object item : slots) {
+                if (item != null) {
+                    target.add(item);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,396 @@
+package album;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of collection mutations. Each add, remove and rate is
+ * encoded as a small checksummed record and queued in memory before the
+ * collection applies it, so a record that cannot be logged, e.g. a title
+ * over Short.MAX_VALUE bytes, is refused without changing anything; a single
+ * flusher thread writes whatever has queued up and forces it to disk in
+ * one go, so many mutations share one fsync (group commit). Once a write
+ * fails, every later append is refused, as its record could not be made
+ * durable. Record layout:
+ * <pre>
+ * int payload length, int CRC32 of payload, payload:
+ *     byte type, short+bytes title, short+bytes artist name, then
+ *     ADD:  int packed date of birth, byte genre, int packed release date
+ *     RATE: byte star
+ * </pre>
+ */
+class WriteAheadLog implements Closeable {
+    private static final byte ADD = 1;
+    private static final byte REMOVE = 2;
+    private static final byte RATE = 3;
+    private static final int HEADER = 8;
+    private static final int BUFFER = 1 << 16;
+    private final Object lock = new Object(); // guards the queue and the counters
+    private final Object io = new Object(); // serializes writes to the channel
+    private final CRC32 crc = new CRC32();
+    private FileChannel channel;
+    private ByteBuffer queue;
+    private ByteBuffer spare;
+    private FileChannel next; // Segment opened by prepare for the next rotation
+    private long nextBytes;
+    private ByteBuffer sealed; // Records left for the segment before a rotation
+    private long sealedTarget;
+    private FileChannel rotated; // Segment to continue in once the sealed records are written
+    private long appended;
+    private long durable;
+    private long segmentBytes;
+    private long fullBytes;
+    private Runnable onFull;
+    private IOException failure;
+    private boolean closed;
+    private Thread flusher;
+    /**
+     * Opens a log segment for appending, creating it if needed.
+     *
+     * @param file Segment file.
+     * @throws IOException If the file cannot be opened.
+     */
+    WriteAheadLog(Path file) throws IOException {
+        channel = open(file);
+        queue = ByteBuffer.allocate(BUFFER);
+        spare = ByteBuffer.allocate(BUFFER);
+        appended = 0;
+        durable = 0;
+        segmentBytes = channel.size();
+        fullBytes = Long.MAX_VALUE;
+        flusher = new Thread(this::flushLoop, "album-wal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+    private static FileChannel open(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+    /**
+     * Asks to be told once the current segment grows past a size, e.g. to trigger compaction.
+     * The callback runs on the appending thread, after the record that crossed the limit.
+     *
+     * @param bytes  Segment size that triggers the callback.
+     * @param action Callback, run once per segment.
+     */
+    void whenFull(long bytes, Runnable action) {
+        synchronized (lock) {
+            fullBytes = bytes;
+            onFull = action;
+        }
+    }
+    void logAdd(Album album) {
+        Artist artist = album.getArtist();
+        append(ADD, album.getTitle(), artist.getName(), artist.getBorn().pack(),
+                album.getGenre().ordinal(), album.getReleased().pack());
+    }
+    void logRemove(Album album) {
+        append(REMOVE, album.getTitle(), album.getArtist().getName(), 0, 0, 0);
+    }
+    void logRate(Album album, int star) {
+        append(RATE, album.getTitle(), album.getArtist().getName(), 0, star, 0);
+    }
+    private void append(byte type, String title, String artistName, int born, int small, int released) {
+        byte[] titleBytes = title.getBytes(StandardCharsets.UTF_8);
+        byte[] nameBytes = artistName.getBytes(StandardCharsets.UTF_8);
+        if (titleBytes.length > Short.MAX_VALUE || nameBytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Title or artist name too long to log.");
+        }
+        int payload = 1 + 2 + titleBytes.length + 2 + nameBytes.length
+                + (type == ADD ? 9 : type == RATE ? 1 : 0);
+        Runnable full = null;
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("Write-ahead log is closed.");
+            }
+            if (failure != null) {
+                throw new UncheckedIOException("Write-ahead log failed.", failure);
+            }
+            queue = ensure(queue, HEADER + payload);
+            int start = queue.position();
+            queue.putInt(payload).putInt(0).put(type);
+            queue.putShort((short) titleBytes.length).put(titleBytes);
+            queue.putShort((short) nameBytes.length).put(nameBytes);
+            if (type == ADD) {
+                queue.putInt(born).put((byte) small).putInt(released);
+            } else if (type == RATE) {
+                queue.put((byte) small);
+            }
+            crc.reset();
+            crc.update(queue.array(), start + HEADER, payload);
+            queue.putInt(start + 4, (int) crc.getValue());
+            appended++;
+            segmentBytes += HEADER + payload;
+            if (segmentBytes >= fullBytes && onFull != null) {
+                full = onFull;
+                fullBytes = Long.MAX_VALUE;
+            }
+            lock.notifyAll();
+        }
+        if (full != null) {
+            full.run();
+        }
+    }
+    private static ByteBuffer ensure(ByteBuffer buffer, int extra) {
+        if (buffer.remaining() >= extra) {
+            return buffer;
+        }
+        ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + extra));
+        buffer.flip();
+        return grown.put(buffer);
+    }
+    /**
+     * Waits until every record appended so far is on disk.
+     *
+     * @throws IOException If writing the log failed.
+     */
+    void sync() throws IOException {
+        synchronized (lock) {
+            long target = appended;
+            while (durable < target && failure == null) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for the log.", e);
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+    /**
+     * Continues appending in a new segment: records appended before this
+     * call go to the current segment, later ones to the new one.
+     *
+     * @param file New segment file.
+     * @throws IOException If the new segment cannot be opened or the log has failed.
+     */
+    void rotate(Path file) throws IOException {
+        prepare(file);
+        rotate();
+    }
+    /**
+     * Opens the segment the next rotate() continues in, so the rotation
+     * itself does no I/O.
+     *
+     * @param file New segment file.
+     * @throws IOException If the file cannot be opened.
+     */
+    void prepare(Path file) throws IOException {
+        FileChannel opened = open(file);
+        FileChannel unused;
+        synchronized (lock) {
+            unused = next;
+            next = opened;
+            nextBytes = opened.size();
+        }
+        if (unused != null) {
+            unused.close();
+        }
+    }
+    /**
+     * Continues appending in the segment opened by prepare. Only hands the
+     * records queued so far to the flusher, which writes them to the current
+     * segment, forces and closes it, so this returns without waiting for the
+     * disk unless the rotation before is still being finished.
+     *
+     * @throws IOException If the log has failed.
+     */
+    void rotate() throws IOException {
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("Write-ahead log is closed.");
+            }
+            if (next == null) {
+                throw new IllegalStateException("No segment prepared to rotate to.");
+            }
+            while (sealed != null && failure == null) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for the log.", e);
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            sealed = queue;
+            sealedTarget = appended;
+            rotated = next;
+            next = null;
+            queue = ByteBuffer.allocate(BUFFER);
+            segmentBytes = nextBytes;
+            lock.notifyAll();
+        }
+    }
+    private void flushLoop() {
+        while (true) {
+            synchronized (lock) {
+                while (queue.position() == 0 && sealed == null && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed && queue.position() == 0 && sealed == null) {
+                    return;
+                }
+            }
+            try {
+                synchronized (io) {
+                    drain();
+                }
+            } catch (IOException e) {
+                synchronized (lock) {
+                    failure = e;
+                    lock.notifyAll();
+                }
+                return;
+            }
+        }
+    }
+    /**
+     * Writes and forces every queued record. If a rotation sealed records for
+     * the current segment, writes those instead, then finishes the segment and
+     * moves on to the next, so the queued records follow in a later drain.
+     * Callers hold the io lock.
+     */
+    private void drain() throws IOException {
+        ByteBuffer batch;
+        long target;
+        FileChannel following = null;
+        synchronized (lock) {
+            if (sealed != null) {
+                batch = sealed;
+                target = sealedTarget;
+                following = rotated;
+                sealed = null;
+                rotated = null;
+            } else {
+                batch = queue;
+                queue = spare;
+                spare = batch;
+                target = appended;
+            }
+        }
+        batch.flip();
+        while (batch.hasRemaining()) {
+            channel.write(batch);
+        }
+        channel.force(false);
+        if (following != null) {
+            channel.close();
+            channel = following;
+        } else {
+            batch.clear();
+        }
+        synchronized (lock) {
+            durable = Math.max(durable, target);
+            lock.notifyAll();
+        }
+    }
+    /**
+     * Flushes the remaining records and closes the segment.
+     *
+     * @throws IOException If the final write fails.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (io) {
+            if (failure == null) {
+                drain();
+            }
+            channel.close();
+            if (next != null) {
+                next.close(); // Prepared but never rotated to
+            }
+            if (rotated != null) {
+                rotated.close(); // Not reached, as writing the sealed records failed
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+    /**
+     * Re-applies the records of a segment to a collection. A torn or corrupt
+     * record, as left by a crash mid-write, ends the replay, and the segment
+     * is truncated there so later appends follow the last good record.
+     *
+     * @param file       Segment to replay.
+     * @param collection Collection to apply the records to; it must not log them again.
+     * @return Number of records applied.
+     * @throws IOException If the segment cannot be read.
+     */
+    static int replay(Path file, Collection collection) throws IOException {
+        ByteBuffer log = ByteBuffer.wrap(Files.readAllBytes(file));
+        CRC32 check = new CRC32();
+        Genre[] genres = Genre.values();
+        int records = 0;
+        while (log.remaining() >= HEADER) {
+            int start = log.position();
+            int payload = log.getInt();
+            int sum = log.getInt();
+            if (payload <= 0 || payload > log.remaining()) {
+                log.position(start);
+                break;
+            }
+            check.reset();
+            check.update(log.array(), log.position(), payload);
+            if ((int) check.getValue() != sum) {
+                log.position(start);
+                break;
+            }
+            byte type = log.get();
+            String title = readString(log);
+            String artistName = readString(log);
+            if (type == ADD) {
+                Date born = Date.unpack(log.getInt());
+                Genre genre = genres[log.get()];
+                Date released = Date.unpack(log.getInt());
+                collection.add(new Album(title, collection.artist(artistName, born), genre, released));
+            } else if (type == REMOVE) {
+                collection.remove(title, artistName);
+            } else {
+                int star = log.get();
+                if (collection.contains(title, artistName)) {
+                    collection.rate(title, artistName, star);
+                }
+            }
+            records++;
+        }
+        if (log.position() < log.limit()) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(log.position());
+            }
+        }
+        return records;
+    }
+    private static String readString(ByteBuffer log) {
+        int length = log.getShort();
+        String value = new String(log.array(), log.position(), length, StandardCharsets.UTF_8);
+        log.position(log.position() + length);
+        return value;
+    }
+}
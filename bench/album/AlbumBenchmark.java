@@ -0,0 +1,45 @@
+package album;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Album average and rendering over a thousand albums with up to five ratings each.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AlbumBenchmark {
+    private Album[] sample;
+
+    @Setup
+    public void setUp() {
+        sample = BenchmarkData.albums(1_000, new Random(1));
+    }
+
+    @Benchmark
+    public double avgRatings() {
+        double total = 0;
+        for (Album album : sample) {
+            total += album.avgRatings();
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long toStringAll() {
+        long total = 0;
+        for (Album album : sample) {
+            total += album.toString().length();
+        }
+        return total;
+    }
+}
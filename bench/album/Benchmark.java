@@ -0,0 +1,115 @@
+package album;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the JMH benchmarks of this directory and guards against regressions:
+ * CollectionBenchmark, CollectionManagerBenchmark, AlbumBenchmark and
+ * DateBenchmark. Each case reports its average time per operation, keyed by
+ * its name and size, e.g. "CollectionBenchmark.add 10000".
+ * <p>
+ * Usage: Benchmark [--save results] [--compare baseline]. With --compare,
+ * cases more than 25% slower than the baseline are listed and the exit
+ * status is 1, so a release can be held back on a regression. A missing
+ * baseline is reported and nothing is compared. Both run from
+ * mvn verify -Pbenchmark.
+ */
+public class Benchmark {
+    private static final double TOLERANCE = 1.25;
+    private final Map<String, Double> results = new LinkedHashMap<>();
+
+    public static void main(String[] args) throws IOException, RunnerException {
+        Path save = null;
+        Path compare = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals("--save")) {
+                save = Paths.get(args[i + 1]);
+            } else if (args[i].equals("--compare")) {
+                compare = Paths.get(args[i + 1]);
+            }
+        }
+        Benchmark benchmark = new Benchmark();
+        benchmark.runAll();
+        if (save != null) {
+            benchmark.save(save);
+        }
+        if (compare != null && !benchmark.compare(compare)) {
+            System.exit(1);
+        }
+    }
+
+    private void runAll() throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include("album\\.\\w+Benchmark\\.")
+                .forks(1)
+                .warmupIterations(3)
+                .warmupTime(TimeValue.milliseconds(300))
+                .measurementIterations(5)
+                .measurementTime(TimeValue.milliseconds(300))
+                .timeUnit(TimeUnit.MICROSECONDS)
+                .build();
+        for (RunResult result : new Runner(options).run()) {
+            // Drop the package: album.CollectionBenchmark.add becomes CollectionBenchmark.add
+            String key = result.getParams().getBenchmark().substring("album.".length());
+            String size = result.getParams().getParam("size");
+            if (size != null) {
+                key += " " + size;
+            }
+            results.put(key, result.getPrimaryResult().getScore());
+        }
+        for (Map.Entry<String, Double> result : results.entrySet()) {
+            System.out.printf("%-44s %14.3f us/op%n", result.getKey(), result.getValue());
+        }
+    }
+
+    private void save(Path file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, Double> result : results.entrySet()) {
+            lines.add(result.getKey() + "\t" + result.getValue());
+        }
+        Files.write(file, lines, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Lists the cases slower than the baseline by more than the tolerance.
+     *
+     * @return True if no case regressed.
+     */
+    private boolean compare(Path baseline) throws IOException {
+        if (!Files.exists(baseline)) {
+            System.out.println("No baseline at " + baseline + ", nothing compared.");
+            return true;
+        }
+        boolean passed = true;
+        for (String line : Files.readAllLines(baseline, StandardCharsets.UTF_8)) {
+            int tab = line.indexOf('\t');
+            if (tab < 0) {
+                continue;
+            }
+            Double now = results.get(line.substring(0, tab));
+            double before = Double.parseDouble(line.substring(tab + 1));
+            if (now != null && now > before * TOLERANCE) {
+                System.out.printf("REGRESSION %s: %.3f us/op, baseline %.3f us/op%n",
+                        line.substring(0, tab), now, before);
+                passed = false;
+            }
+        }
+        return passed;
+    }
+}
@@ -0,0 +1,96 @@
+package album;
+
+import java.util.Random;
+
+/**
+ * Reproducible albums, lookup keys and command sessions for the benchmarks.
+ */
+class BenchmarkData {
+    private static final String[] GENRES = {"Pop", "Country", "Classical", "Jazz", "Unknown"};
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Albums by size / 10 artists, with random genres, dates and up to five ratings each.
+     */
+    static Album[] albums(int size, Random random) {
+        Artist[] artists = new Artist[Math.max(1, size / 10)];
+        for (int i = 0; i < artists.length; i++) {
+            artists[i] = new Artist("Artist " + i, new Date(1930 + random.nextInt(60), 1 + random.nextInt(12),
+                    1 + random.nextInt(28)));
+        }
+        Album[] albums = new Album[size];
+        for (int i = 0; i < size; i++) {
+            Album album = new Album("Title " + i, artists[random.nextInt(artists.length)],
+                    Genre.getGenreByName(GENRES[random.nextInt(GENRES.length)]),
+                    new Date(1960 + random.nextInt(60), 1 + random.nextInt(12), 1 + random.nextInt(28)));
+            for (int vote = random.nextInt(6); vote > 0; vote--) {
+                album.rate(1 + random.nextInt(5), 0);
+            }
+            albums[i] = album;
+        }
+        return albums;
+    }
+
+    /**
+     * Lookup keys equal to the albums, built the way commands build them.
+     */
+    static Album[] probes(Album[] albums) {
+        Album[] probes = new Album[albums.length];
+        for (int i = 0; i < albums.length; i++) {
+            Album album = albums[(int) ((i * 0x9E3779B97F4A7C15L >>> 1) % albums.length)];
+            probes[i] = new Album(album.getTitle(), new Artist(album.getArtist().getName(), null), null, null);
+        }
+        return probes;
+    }
+
+    static Collection filled(Album[] albums) {
+        return filled(albums, new Collection());
+    }
+
+    /**
+     * The albums in a collection with a listing cache of some number of characters.
+     */
+    static Collection filled(Album[] albums, long listingCacheChars) {
+        return filled(albums, new Collection(listingCacheChars));
+    }
+
+    private static Collection filled(Album[] albums, Collection collection) {
+        for (Album album : albums) {
+            collection.add(album.copy());
+        }
+        return collection;
+    }
+
+    /**
+     * Adds every album, rates each once, then removes every other one.
+     */
+    static String commands(Album[] albums) {
+        StringBuilder commands = new StringBuilder();
+        for (Album album : albums) {
+            commands.append("A,").append(album.getTitle()).append(',').append(album.getArtist().getName())
+                    .append(',').append(album.getArtist().getBorn()).append(',').append(album.getGenre())
+                    .append(',').append(album.getReleased()).append('\n');
+        }
+        for (int i = 0; i < albums.length; i++) {
+            Album album = albums[i];
+            commands.append("R,").append(album.getTitle()).append(',').append(album.getArtist().getName())
+                    .append(",,").append(1 + i % 5).append('\n');
+        }
+        for (int i = 0; i < albums.length; i++) {
+            Album album = albums[i];
+            if (i % 2 == 0) {
+                commands.append("D,");
+            } else {
+                commands.append("R,");
+            }
+            commands.append(album.getTitle()).append(',').append(album.getArtist().getName());
+            if (i % 2 != 0) {
+                commands.append(",,3");
+            }
+            commands.append('\n');
+        }
+        return commands.append("Q\n").toString();
+    }
+}
@@ -0,0 +1,117 @@
+package album;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collection add, lookup and remove of every album at several sizes, each
+ * listing order, a page from the middle of PD and the top-10 leaderboard.
+ * Listings render with the listing cache off; printByDateCached times a
+ * listing served from the cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CollectionBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int size;
+    private Album[] albums;
+    private Album[] probes;
+    private Collection filled;
+    private Collection uncached;
+    private Collection cached;
+    private PrintWriter discard;
+
+    @Setup
+    public void setUp() {
+        albums = BenchmarkData.albums(size, new Random(size));
+        probes = BenchmarkData.probes(albums);
+        filled = BenchmarkData.filled(albums);
+        uncached = BenchmarkData.filled(albums, 0);
+        cached = BenchmarkData.filled(albums, Long.MAX_VALUE);
+        discard = new PrintWriter(Writer.nullWriter());
+    }
+
+    @Benchmark
+    public Collection add() {
+        Collection collection = new Collection();
+        for (Album album : albums) {
+            collection.add(album.copy());
+        }
+        return collection;
+    }
+
+    @Benchmark
+    public long getAlbum() {
+        long found = 0;
+        for (Album probe : probes) {
+            if (filled.getAlbum(probe) != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public Collection remove(Refilled refilled) {
+        for (Album probe : probes) {
+            refilled.collection.remove(probe);
+        }
+        return refilled.collection;
+    }
+
+    @Benchmark
+    public void printByDate() {
+        uncached.printByDate(discard);
+    }
+
+    @Benchmark
+    public void printByDateCached() {
+        cached.printByDate(discard);
+    }
+
+    @Benchmark
+    public void printByGenre() {
+        uncached.printByGenre(discard);
+    }
+
+    @Benchmark
+    public void printByRating() {
+        uncached.printByRating(discard);
+    }
+
+    @Benchmark
+    public int printPage() {
+        return filled.printPage(filled.albumsByDate(size / 2), 20, discard);
+    }
+
+    @Benchmark
+    public void printTopRated() {
+        filled.printTopRated(10, discard);
+    }
+
+    /**
+     * A full collection for each remove run; filling it is not timed.
+     */
+    @State(Scope.Thread)
+    public static class Refilled {
+        Collection collection;
+
+        @Setup(Level.Invocation)
+        public void fill(CollectionBenchmark benchmark) {
+            collection = BenchmarkData.filled(benchmark.albums);
+        }
+    }
+}
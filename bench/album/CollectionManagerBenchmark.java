@@ -0,0 +1,45 @@
+package album;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end command throughput of a CollectionManager: a session that adds
+ * every album, rates each once, then removes every other one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CollectionManagerBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int size;
+    private String commands;
+    private PrintWriter discard;
+
+    @Setup
+    public void setUp() {
+        commands = BenchmarkData.commands(BenchmarkData.albums(size, new Random(size)));
+        discard = new PrintWriter(Writer.nullWriter());
+    }
+
+    @Benchmark
+    public CollectionManager commands() throws IOException {
+        CollectionManager manager = new CollectionManager(discard);
+        manager.serve(new BufferedReader(new StringReader(commands)));
+        return manager;
+    }
+}
@@ -0,0 +1,42 @@
+package album;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Date validation over a thousand dates, some with out of range months and days.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DateBenchmark {
+    private Date[] dates;
+
+    @Setup
+    public void setUp() {
+        dates = new Date[1_000];
+        Random random = new Random(2);
+        for (int i = 0; i < dates.length; i++) {
+            dates[i] = new Date(1890 + random.nextInt(150), random.nextInt(14), random.nextInt(33));
+        }
+    }
+
+    @Benchmark
+    public long isValid() {
+        long valid = 0;
+        for (Date date : dates) {
+            if (date.isValid()) {
+                valid++;
+            }
+        }
+        return valid;
+    }
+}
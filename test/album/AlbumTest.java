@@ -0,0 +1,67 @@
+package album;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Average ratings as rendered in listings, checked against String.format.
+ */
+class AlbumTest {
+    private static Album rated(int... stars) {
+        Album album = new Album("Blue", new Artist("Joni Mitchell", new Date(1943, 11, 7)), Genre.POP,
+                new Date(1971, 6, 22));
+        for (int star : stars) {
+            album.rate(star, 0);
+        }
+        return album;
+    }
+
+    private static void averageAsFormatted(Album album) {
+        String expected = String.format(" (average rating: %.2f)", album.avgRatings());
+        assertTrue(album.toString().endsWith(expected), album + " should end with " + expected);
+    }
+
+    @Test
+    void averageRoundsLikeFormat() {
+        averageAsFormatted(rated(5));
+        averageAsFormatted(rated(1, 2));
+        averageAsFormatted(rated(1, 1, 2));
+        averageAsFormatted(rated(4, 4, 5));
+        averageAsFormatted(rated(1, 2, 2, 2, 2, 2, 2, 2));
+    }
+
+    @Test
+    void averageUsesDecimalSeparatorOfLocale() {
+        Locale saved = Locale.getDefault(Locale.Category.FORMAT);
+        try {
+            Locale.setDefault(Locale.Category.FORMAT, Locale.GERMANY);
+            averageAsFormatted(rated(1, 2));
+            assertTrue(rated(1, 2).toString().endsWith("(average rating: 1,50)"));
+            Locale.setDefault(Locale.Category.FORMAT, Locale.US);
+            assertTrue(rated(1, 2).toString().endsWith("(average rating: 1.50)"));
+        } finally {
+            Locale.setDefault(Locale.Category.FORMAT, saved);
+        }
+    }
+
+    @Test
+    void copyAsOfEpochLeavesOutLaterVotes() {
+        Album album = rated(5, 4);
+        album.rate(1, 1);
+        album.rate(2, 1);
+        assertEquals(4.5, album.copyAsOf(0).avgRatings());
+        assertEquals(3.0, album.copyAsOf(1).avgRatings());
+        album.rate(3, 3);
+        assertEquals(3.0, album.copyAsOf(2).avgRatings());
+        assertEquals(3.0, album.copy().avgRatings());
+    }
+
+    @Test
+    void unratedAlbumHasNoAverage() {
+        assertEquals("[Blue] Released 06/22/1971 [joni mitchell:11/07/1943] [POP] Rating: none", rated().toString());
+    }
+}
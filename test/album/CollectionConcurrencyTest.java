@@ -0,0 +1,267 @@
+package album;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Many threads adding, removing and rating at once, then every order checked
+ * against the albums the threads know they left in the collection.
+ */
+class CollectionConcurrencyTest {
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 4000;
+    private static final int KEYS = 40; // Titles of each thread
+    private static final String[] ARTISTS = {"Joni Mitchell", "Miles Davis", "Nina Simone"};
+
+    /**
+     * Albums one thread left in the collection, with their star counts.
+     */
+    private static Map<String, int[]> mutate(Collection collection, int thread, AtomicIntegerArray sharedVotes) {
+        Random random = new Random(thread);
+        Genre[] genres = Genre.values();
+        Map<String, int[]> present = new HashMap<>();
+        for (int round = 0; round < ROUNDS; round++) {
+            String title = "T" + thread + "-" + random.nextInt(KEYS);
+            String artistName = ARTISTS[title.hashCode() & 1];
+            int action = random.nextInt(10);
+            if (action < 4) {
+                Album album = new Album(title, collection.artist(artistName, new Date(1943, 11, 7)),
+                        genres[random.nextInt(genres.length)],
+                        new Date(1960 + random.nextInt(40), 1 + random.nextInt(12), 1 + random.nextInt(28)));
+                assertEquals(!present.containsKey(title), collection.add(album), title);
+                present.putIfAbsent(title, new int[5]);
+            } else if (action < 6) {
+                assertEquals(present.remove(title) != null, collection.remove(title, artistName), title);
+            } else if (action < 9) {
+                int star = 1 + random.nextInt(5);
+                int[] counts = present.get(title);
+                if (counts == null) {
+                    assertThrows(IllegalArgumentException.class, () -> collection.rate(title, artistName, star));
+                } else {
+                    collection.rate(title, artistName, star);
+                    counts[star - 1]++;
+                }
+            } else {
+                int star = 1 + random.nextInt(5);
+                collection.rate("Shared", ARTISTS[2], star);
+                sharedVotes.incrementAndGet(star - 1);
+            }
+        }
+        return present;
+    }
+
+    @Test
+    void ordersAgreeAfterConcurrentChanges() throws Exception {
+        Collection collection = new Collection();
+        collection.add(new Album("Shared", collection.artist(ARTISTS[2], new Date(1933, 2, 21)), Genre.JAZZ,
+                new Date(1958, 1, 1)));
+        AtomicIntegerArray sharedVotes = new AtomicIntegerArray(5);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<Map<String, int[]>>> results = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return mutate(collection, thread, sharedVotes);
+                }));
+            }
+            start.countDown();
+            Set<Album> expected = Collections.newSetFromMap(new IdentityHashMap<>());
+            Album shared = collection.getAlbum("Shared", ARTISTS[2]);
+            expected.add(shared);
+            for (int t = 0; t < THREADS; t++) {
+                for (Map.Entry<String, int[]> kept : results.get(t).get().entrySet()) {
+                    Album album = collection.getAlbum(kept.getKey(), ARTISTS[kept.getKey().hashCode() & 1]);
+                    assertNotNull(album, kept.getKey());
+                    assertStars(kept.getValue(), album);
+                    expected.add(album);
+                }
+            }
+            int[] votes = new int[5];
+            for (int i = 0; i < 5; i++) {
+                votes[i] = sharedVotes.get(i);
+            }
+            assertStars(votes, shared);
+            assertOrder(expected, collection.albumsByDate(0), Collection.BY_DATE);
+            assertOrder(expected, collection.albumsByGenre(0), Collection.BY_GENRE);
+            assertOrder(expected, collection.albumsByRating(0), (x, y) ->
+                    Collection.BY_RATING.compare(new Collection.RatedAlbum(x), new Collection.RatedAlbum(y)));
+            assertListings(expected, collection);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Casts votes from every thread at once on a few albums, one of them voted
+     * on by all, while another thread keeps reading the rating order.
+     *
+     * @return Votes cast on each album, by star.
+     */
+    private static AtomicIntegerArray[] vote(Collection collection, String[] titles) throws Exception {
+        AtomicIntegerArray[] cast = new AtomicIntegerArray[titles.length];
+        for (int i = 0; i < titles.length; i++) {
+            cast[i] = new AtomicIntegerArray(5);
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> voters = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                voters.add(pool.submit(() -> {
+                    start.await();
+                    Random random = new Random(thread);
+                    for (int round = 0; round < ROUNDS; round++) {
+                        // Every other vote goes to the first album
+                        int i = (round & 1) == 0 ? 0 : random.nextInt(titles.length);
+                        int star = 1 + random.nextInt(5);
+                        collection.rate(titles[i], ARTISTS[0], star);
+                        cast[i].incrementAndGet(star - 1);
+                    }
+                    return null;
+                }));
+            }
+            Future<?> reader = pool.submit(() -> {
+                start.await();
+                while (!Thread.currentThread().isInterrupted()) {
+                    collection.printTopRated(2, new PrintWriter(new StringWriter()));
+                }
+                return null;
+            });
+            start.countDown();
+            for (Future<?> voter : voters) {
+                voter.get();
+            }
+            reader.cancel(true);
+        } finally {
+            pool.shutdownNow();
+        }
+        return cast;
+    }
+
+    private static String[] rateable(Collection collection) {
+        String[] titles = {"Blue", "Hejira", "Court and Spark", "Ladies of the Canyon"};
+        for (String title : titles) {
+            collection.add(new Album(title, collection.artist(ARTISTS[0], new Date(1943, 11, 7)), Genre.POP,
+                    new Date(1971, 6, 22)));
+        }
+        return titles;
+    }
+
+    private static void assertVotes(AtomicIntegerArray[] cast, String[] titles, Collection collection) {
+        Set<Album> expected = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < titles.length; i++) {
+            Album album = collection.getAlbum(titles[i], ARTISTS[0]);
+            for (int star = 1; star <= 5; star++) {
+                assertEquals(cast[i].get(star - 1), album.getStarCount(star), titles[i] + " " + star);
+            }
+            expected.add(album);
+        }
+        assertOrder(expected, collection.albumsByRating(0), (x, y) ->
+                Collection.BY_RATING.compare(new Collection.RatedAlbum(x), new Collection.RatedAlbum(y)));
+    }
+
+    @Test
+    void concurrentVotesAreAllCounted() throws Exception {
+        Collection collection = new Collection();
+        String[] titles = rateable(collection);
+        assertVotes(vote(collection, titles), titles, collection);
+    }
+
+    @Test
+    void concurrentLoggedVotesSurviveReopen(@TempDir Path dir) throws Exception {
+        String[] titles;
+        AtomicIntegerArray[] cast;
+        try (CollectionStore store = CollectionStore.open(dir)) {
+            titles = rateable(store.collection());
+            cast = vote(store.collection(), titles);
+            assertVotes(cast, titles, store.collection());
+        }
+        try (CollectionStore store = CollectionStore.open(dir)) {
+            assertVotes(cast, titles, store.collection());
+        }
+    }
+
+    private static void assertStars(int[] counts, Album album) {
+        for (int star = 1; star <= 5; star++) {
+            assertEquals(counts[star - 1], album.getStarCount(star), album.getTitle() + " " + star);
+        }
+    }
+
+    /**
+     * Checks that an order holds exactly the expected albums, each after the one before.
+     */
+    private static void assertOrder(Set<Album> expected, Iterator<Album> order, Collection.Comparator<Album> comparer) {
+        Set<Album> listed = Collections.newSetFromMap(new IdentityHashMap<>());
+        Album previous = null;
+        while (order.hasNext()) {
+            Album album = order.next();
+            assertTrue(listed.add(album), album.getTitle());
+            if (previous != null) {
+                assertTrue(comparer.compare(previous, album) < 0, previous.getTitle() + " before " + album.getTitle());
+            }
+            previous = album;
+        }
+        assertEquals(expected, listed);
+    }
+
+    /**
+     * Checks the genre and artist listings and the title search against the expected albums.
+     */
+    private static void assertListings(Set<Album> expected, Collection collection) {
+        Map<Genre, Integer> ofGenre = new HashMap<>();
+        Map<String, Integer> ofArtist = new HashMap<>();
+        for (Album album : expected) {
+            ofGenre.merge(album.getGenre(), 1, Integer::sum);
+            ofArtist.merge(album.getArtist().getName().toLowerCase(), 1, Integer::sum); // Stored in lower case
+            assertTrue(collection.search(album.getTitle(), THREADS * KEYS).contains(album), album.getTitle());
+        }
+        for (Genre genre : Genre.values()) {
+            StringWriter printed = new StringWriter();
+            PrintWriter out = new PrintWriter(printed);
+            assertEquals(ofGenre.containsKey(genre), collection.printGenre(genre, out), genre.toString());
+            out.flush();
+            assertEquals(ofGenre.getOrDefault(genre, 0), lines(printed.toString()), genre.toString());
+        }
+        for (String artistName : ARTISTS) {
+            StringWriter printed = new StringWriter();
+            PrintWriter out = new PrintWriter(printed);
+            String stored = artistName.toLowerCase();
+            assertEquals(ofArtist.containsKey(stored), collection.printByArtist(artistName, out), artistName);
+            out.flush();
+            assertEquals(ofArtist.getOrDefault(stored, 0), lines(printed.toString()), artistName);
+        }
+        assertFalse(collection.contains("T0-" + KEYS, ARTISTS[0]));
+    }
+
+    private static int lines(String text) {
+        return text.isEmpty() ? 0 : text.split(System.lineSeparator()).length;
+    }
+}
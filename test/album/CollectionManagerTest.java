@@ -0,0 +1,134 @@
+package album;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Sessions of commands and the lines they print.
+ */
+class CollectionManagerTest {
+    private static final String ADD_TWO = "A,Blue,Joni Mitchell,11/7/1943,Pop,6/22/1971\n"
+            + "A,Kind of Blue,Miles Davis,5/26/1926,Jazz,8/17/1959\n";
+
+    @Test
+    void shortListCommandsAreInvalid() throws IOException {
+        assertEquals("Invalid command!\nInvalid command!\nInvalid command!\n", session("LA\nLG\nLA,\n"));
+    }
+
+    @Test
+    void listCommandsStillWork() throws IOException {
+        assertEquals("No POP albums in the collection.\n", session("LG,pop\n"));
+        assertTrue(session(ADD_TWO + "LA,JONI MITCHELL\n")
+                .endsWith("[Blue] Released 06/22/1971 [joni mitchell:11/07/1943] [POP] Rating: none\n"));
+    }
+
+    @Test
+    void shortRangeCommandsAreInvalid() throws IOException {
+        assertEquals("Invalid command!\nInvalid command!\n", session("RD,1/1/1970\nRR\n"));
+    }
+
+    @Test
+    void releaseRangeNeedsValidDates() throws IOException {
+        assertEquals("Date: 15/31/1970 is invalid.\nDate: 1/1/99999999 is invalid.\nDate: 1/1 is invalid.\n",
+                session("RD,15/31/1970,1/1/1980\nRD,1/1/1970,1/1/99999999\nRD,1/1,1/1/1980\n"));
+        assertTrue(session(ADD_TWO + "RD, 1/1/1970 ,12/31/1979\n").endsWith("[Blue] Released 06/22/1971"
+                + " [joni mitchell:11/07/1943] [POP] Rating: none\n"));
+    }
+
+    @Test
+    void ratingRangeNeedsFiniteBounds() throws IOException {
+        assertEquals("Rating bounds must be finite numbers.\nRating bounds must be finite numbers.\n",
+                session("RR,NaN,NaN\nRR,1,Infinity\n"));
+        assertEquals("Rating: a is invalid.\nRating: 5x is invalid.\n", session("RR,a,5\nRR, 1 ,5x\n"));
+    }
+
+    @Test
+    void topRatedNeedsCount() throws IOException {
+        assertTrue(session(ADD_TWO + "TR\nTR,0\n").endsWith("Invalid command!\nNumber of albums must be at least 1.\n"));
+    }
+
+    @Test
+    void searchNeedsTextAndCount() throws IOException {
+        assertEquals("Invalid command!\nNumber of albums must be at least 1.\nNumber of albums must be at least 1.\n",
+                session("S\nS,t,0\nS,t,-3\n"));
+        assertTrue(session(ADD_TWO + "S,blu,1\n").endsWith("[Blue] Released 06/22/1971"
+                + " [joni mitchell:11/07/1943] [POP] Rating: none\n"));
+    }
+
+    @Test
+    void ratingMovesAlbumUpTheRatedOrder() throws IOException {
+        String listed = session(ADD_TWO + "PR\nR,Kind of Blue,Miles Davis,5/26/1926,5\nPR\n");
+        assertTrue(listed.endsWith("You rate 5 for Kind of Blue:08/17/1959(Miles Davis)\n"
+                + "[Kind of Blue] Released 08/17/1959 [miles davis:05/26/1926] [JAZZ]"
+                + " Rating: *(0)**(0)***(0)****(0)*****(1) (average rating: 5.00)\n"
+                + "[Blue] Released 06/22/1971 [joni mitchell:11/07/1943] [POP] Rating: none\n"), listed);
+    }
+
+    @Test
+    void pagesAddUpToTheWholeListing() throws IOException {
+        StringBuilder commands = new StringBuilder();
+        String[] genres = {"Pop", "Jazz", "Classical", "Country", "Unknown"};
+        for (int i = 0; i < 12; i++) {
+            commands.append("A,Album ").append(i).append(",Artist ").append(i % 4).append(",1/1/1950,")
+                    .append(genres[i % genres.length]).append(",").append(1 + i % 12).append("/1/").append(1990 - i)
+                    .append("\n");
+        }
+        for (int i = 0; i < 12; i += 2) {
+            commands.append("R,Album ").append(i).append(",Artist ").append(i % 4).append(",1/1/1950,")
+                    .append(1 + i % 5).append("\n");
+        }
+        for (String order : new String[] {"PD", "PG", "PR"}) {
+            String whole = session(commands + order + "\n");
+            assertTrue(whole.contains("[Album 11]"), whole);
+            String paged = session(commands + order + ",0,5\n" + order + ",5,5\n" + order + ",10,5\n"
+                    + order + ",15,5\n");
+            assertEquals(whole + "No albums at offset 15.\n", paged, order);
+            assertEquals(whole, session(commands + order + ",0,12\n"), order);
+        }
+    }
+
+    @Test
+    void importReportsMalformedRecordsAndGoesOn(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("albums.txt");
+        Files.writeString(file, "A,Blue,Joni Mitchell,11/7/1943,Pop,6/22/1971\nA,Short\n"
+                + "A,Kind of Blue,Miles Davis,5/26/1926,Jazz,8/17/1959\nA,Blue,Joni Mitchell\n");
+        StringWriter printed = new StringWriter();
+        PrintWriter out = new PrintWriter(printed);
+        CollectionManager manager = new CollectionManager(out);
+        manager.importFile(file);
+        out.flush();
+        assertEquals("album.album.Collection Manager is up running.\n"
+                + "Blue(Joni Mitchell:11/7/1943) added to the collection.\n"
+                + "Line 2 is malformed: A,Short\n"
+                + "Kind of Blue(Miles Davis:5/26/1926) added to the collection.\n"
+                + "Line 4 is malformed: A,Blue,Joni Mitchell\n",
+                printed.toString().replace(System.lineSeparator(), "\n"));
+        assertTrue(manager.getCollection().contains("Kind of Blue", "Miles Davis"));
+    }
+
+    /**
+     * Runs commands through a fresh manager.
+     *
+     * @return What the session printed, without the welcome and goodbye lines.
+     */
+    static String session(String commands) throws IOException {
+        StringWriter printed = new StringWriter();
+        PrintWriter out = new PrintWriter(printed);
+        new CollectionManager(out).serve(new BufferedReader(new StringReader(commands + "Q\n")));
+        out.flush();
+        String text = printed.toString().replace(System.lineSeparator(), "\n");
+        // Drop the first and last line
+        return text.substring(text.indexOf('\n') + 1, text.lastIndexOf('\n', text.length() - 2) + 1);
+    }
+}
@@ -0,0 +1,103 @@
+package album;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Fields, numbers and dates read in place, checked against what
+ * String.split, String.trim and Integer.parseInt give for the same line.
+ */
+class CommandParserTest {
+    private static final String[] LINES = {
+            "A,Blue,Joni Mitchell,11/7/1943,Pop,6/22/1971",
+            "A,Blue,,",
+            "A,,Blue",
+            "D,Blue,,Joni Mitchell,,",
+            ",,,",
+            ",a",
+            "",
+            "PD",
+            "  PD , 3 ,  ",
+            "R, Blue ,Joni Mitchell,x, 5 ",
+            "R,Blue,Joni Mitchell,x,+5",
+            "A,t,a,11//1943,Pop,6/22/1971/",
+            "A,t,a,/11/7,Pop,6/22/1971//",
+            "A,t,a,1943,Pop,//",
+            "RD, 1/1/1970 ,12/31/1979/ , /1/ ",
+    };
+
+    @Test
+    void emptyTrailingFieldsAreDropped() {
+        assertEquals(2, parse("A,Blue,,").fieldCount());
+        assertEquals(0, parse(",,,").fieldCount());
+        assertEquals(1, parse("").fieldCount());
+    }
+
+    @Test
+    void consecutiveSeparatorsGiveEmptyFields() {
+        CommandParser parser = parse("A,,Blue");
+        assertEquals(3, parser.fieldCount());
+        assertEquals("", parser.field(1));
+        assertEquals("Blue", parser.field(2));
+    }
+
+    @Test
+    void whitespaceIsTrimmedOnlyOnRequest() {
+        CommandParser parser = parse("R, Blue ,Joni Mitchell,x, 5 ");
+        assertEquals(" Blue ", parser.field(1));
+        assertEquals("Blue", parser.trimmedField(1));
+        assertEquals("R", parser.keyword(0, new String[] {"A", "R"}));
+    }
+
+    @Test
+    void everyLineMatchesSplit() {
+        for (String line : LINES) {
+            String[] fields = line.split(",");
+            CommandParser parser = parse(line);
+            assertEquals(fields.length, parser.fieldCount(), line);
+            for (int i = 0; i < fields.length; i++) {
+                assertEquals(fields[i], parser.field(i), line);
+                assertEquals(fields[i].trim(), parser.trimmedField(i), line);
+                int field = i;
+                sameOutcome(() -> Integer.parseInt(fields[field]), () -> parser.intField(field), line);
+                for (int part = 0; part < 3; part++) {
+                    int datePart = part;
+                    sameOutcome(() -> Integer.parseInt(fields[field].split("/")[datePart]),
+                            () -> parser.datePart(field, datePart), line);
+                    sameOutcome(() -> Integer.parseInt(fields[field].trim().split("/")[datePart]),
+                            () -> parser.trimmedDatePart(field, datePart), line);
+                }
+                assertEquals(fields[i].trim().split("/").length, parser.trimmedDateParts(i), line);
+            }
+            assertThrows(ArrayIndexOutOfBoundsException.class, () -> parser.field(fields.length), line);
+        }
+    }
+
+    private static CommandParser parse(String line) {
+        CommandParser parser = new CommandParser();
+        parser.parse(line, 0, line.length());
+        return parser;
+    }
+
+    private interface IntCall {
+        int call();
+    }
+
+    /**
+     * Checks that two ways of reading a value give the same number, or fail
+     * with the same exception and message.
+     */
+    private static void sameOutcome(IntCall expected, IntCall actual, String line) {
+        int value;
+        try {
+            value = expected.call();
+        } catch (RuntimeException e) {
+            RuntimeException thrown = assertThrows(e.getClass(), actual::call, line);
+            assertEquals(e.getMessage(), thrown.getMessage(), line);
+            return;
+        }
+        assertEquals(value, actual.call(), line);
+    }
+}
@@ -0,0 +1,72 @@
+package album;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The cases of the Date testbed, checked instead of printed, and dates
+ * whose parts do not fit a calendar.
+ */
+class DateTest {
+    @Test
+    void leapYear() {
+        assertTrue(new Date(2020, 2, 29).isValid());
+    }
+
+    @Test
+    void commonYear() {
+        assertFalse(new Date(1900, 2, 29).isValid());
+    }
+
+    @Test
+    void centuryLeapYear() {
+        assertTrue(new Date(2000, 2, 29).isValid());
+    }
+
+    @Test
+    void invalidDayForApril() {
+        assertFalse(new Date(2021, 4, 31).isValid());
+    }
+
+    @Test
+    void validEndOfYear() {
+        assertTrue(new Date(1980, 12, 31).isValid());
+    }
+
+    @Test
+    void validStartOfYear() {
+        assertTrue(new Date(2023, 1, 1).isValid());
+    }
+
+    @Test
+    void yearBeyondRangeIsFuture() {
+        assertTrue(new Date(5_000_000, 1, 1).isFutureDate());
+    }
+
+    @Test
+    void dayBeyondRangeNextYearIsFuture() {
+        assertTrue(new Date(LocalDate.now().getYear() + 1, 1, 40).isFutureDate());
+    }
+
+    @Test
+    void monthBeyondRangeInPastIsNotFuture() {
+        assertFalse(new Date(1999, 20, 1).isFutureDate());
+    }
+
+    @Test
+    void negativeYearIsBefore1900() {
+        assertTrue(new Date(-5, 1, 1).isBefore1900());
+        assertFalse(new Date(-5, 1, 1).isFutureDate());
+    }
+
+    @Test
+    void outOfRangePartsPrintAsGiven() {
+        assertEquals("13/01/1999", new Date(1999, 13, 1).toString());
+        assertEquals("02/45/2020", new Date(2020, 2, 45).toString());
+    }
+}
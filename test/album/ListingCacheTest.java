@@ -0,0 +1,164 @@
+package album;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Listings printed through the listing cache, fitting it or not.
+ */
+class ListingCacheTest {
+    private static Collection twoAlbums(long listingCacheChars) {
+        Collection collection = new Collection(listingCacheChars);
+        Artist joni = collection.artist("Joni Mitchell", new Date(1943, 11, 7));
+        collection.add(new Album("Blue", joni, Genre.POP, new Date(1971, 6, 22)));
+        collection.add(new Album("Hejira", joni, Genre.POP, new Date(1976, 11, 22)));
+        return collection;
+    }
+
+    private static String printByDate(Collection collection) {
+        return print(collection, "PD");
+    }
+
+    /**
+     * Prints PD, PG, PR or LG of a genre, e.g. "LG,POP".
+     */
+    private static String print(Collection collection, String listing) {
+        StringWriter printed = new StringWriter();
+        PrintWriter out = new PrintWriter(printed);
+        switch (listing) {
+            case "PD" -> collection.printByDate(out);
+            case "PG" -> collection.printByGenre(out);
+            case "PR" -> collection.printByRating(out);
+            default -> collection.printGenre(Genre.valueOf(listing.substring(3)), out);
+        }
+        out.flush();
+        return printed.toString();
+    }
+
+    /**
+     * Lists PD, PG, PR and LG of pop, jazz and country on a cached collection and
+     * on the same albums uncached, checking they print the same.
+     */
+    private static void listEverything(Collection cached, Collection uncached) {
+        for (String listing : new String[] {"PD", "PG", "PR", "LG,POP", "LG,JAZZ", "LG,COUNTRY"}) {
+            assertEquals(print(uncached, listing), print(cached, listing), listing);
+        }
+    }
+
+    /**
+     * Applies one change to both collections and checks which listings it invalidates:
+     * PD, PG, PR and LG of pop must be rendered again, LG of jazz still comes from cache.
+     */
+    private static void changeToPopInvalidates(Collection cached, Collection uncached,
+                                               Consumer<Collection> change) {
+        listEverything(cached, uncached);
+        change.accept(cached);
+        change.accept(uncached);
+        long misses = cached.getListingCacheMisses();
+        long hits = cached.getListingCacheHits();
+        for (String listing : new String[] {"PD", "PG", "PR", "LG,POP"}) {
+            assertEquals(print(uncached, listing), print(cached, listing), listing);
+        }
+        assertEquals(misses + 4, cached.getListingCacheMisses());
+        assertEquals(print(uncached, "LG,JAZZ"), print(cached, "LG,JAZZ"));
+        assertEquals(hits + 1, cached.getListingCacheHits());
+    }
+
+    private static Collection withJazz(long listingCacheChars) {
+        Collection collection = twoAlbums(listingCacheChars);
+        Artist miles = collection.artist("Miles Davis", new Date(1926, 5, 26));
+        collection.add(new Album("Kind of Blue", miles, Genre.JAZZ, new Date(1959, 8, 17)));
+        return collection;
+    }
+
+    @Test
+    void addInvalidatesListingsOfItsGenre() {
+        changeToPopInvalidates(withJazz(1 << 20), withJazz(0), collection -> collection.add(
+                new Album("Court and Spark", collection.artist("Joni Mitchell", new Date(1943, 11, 7)),
+                        Genre.POP, new Date(1974, 1, 17))));
+    }
+
+    @Test
+    void removeInvalidatesListingsOfItsGenre() {
+        changeToPopInvalidates(withJazz(1 << 20), withJazz(0), collection -> collection.remove("Blue", "Joni Mitchell"));
+    }
+
+    @Test
+    void rateInvalidatesListingsOfItsGenre() {
+        changeToPopInvalidates(withJazz(1 << 20), withJazz(0), collection -> collection.rate("Hejira", "Joni Mitchell", 4));
+    }
+
+    @Test
+    void randomChangesNeverServeStaleListings() {
+        Random random = new Random(25);
+        Collection cached = new Collection(1 << 20);
+        Collection uncached = new Collection(0);
+        Genre[] genres = {Genre.POP, Genre.JAZZ, Genre.COUNTRY};
+        List<String> titles = new ArrayList<>();
+        for (int round = 0; round < 3000; round++) {
+            int action = random.nextInt(10);
+            if (action < 4 || titles.isEmpty()) {
+                String title = "Title " + random.nextInt(100);
+                Genre genre = genres[random.nextInt(genres.length)];
+                Date released = new Date(1960 + random.nextInt(40), 1 + random.nextInt(12), 1 + random.nextInt(28));
+                boolean added = cached.add(new Album(title, cached.artist("Artist", new Date(1943, 11, 7)),
+                        genre, released));
+                assertEquals(added, uncached.add(new Album(title, uncached.artist("Artist", new Date(1943, 11, 7)),
+                        genre, released)));
+                if (added) {
+                    titles.add(title);
+                }
+            } else if (action < 6) {
+                String title = titles.remove(random.nextInt(titles.size()));
+                cached.remove(title, "Artist");
+                uncached.remove(title, "Artist");
+            } else if (action < 9) {
+                String title = titles.get(random.nextInt(titles.size()));
+                int rating = 1 + random.nextInt(5);
+                cached.rate(title, "Artist", rating);
+                uncached.rate(title, "Artist", rating);
+            } else {
+                listEverything(cached, uncached);
+            }
+        }
+        listEverything(cached, uncached);
+        assertTrue(cached.getListingCacheHits() > 0);
+    }
+
+    @Test
+    void secondListingComesFromCache() {
+        Collection collection = twoAlbums(1 << 20);
+        String first = printByDate(collection);
+        assertEquals(first, printByDate(collection));
+        assertEquals(2, first.split(System.lineSeparator()).length);
+        assertEquals(1, collection.getListingCacheMisses());
+        assertEquals(1, collection.getListingCacheHits());
+    }
+
+    @Test
+    void listingOutgrowingCacheIsPrintedWhole() {
+        String whole = printByDate(twoAlbums(1 << 20));
+        // Room for two of the shortest lines, so rendering starts a copy that outgrows the cache
+        Collection collection = twoAlbums(whole.length() - 1);
+        assertEquals(whole, printByDate(collection));
+        assertEquals(whole, printByDate(collection));
+        assertEquals(2, collection.getListingCacheMisses());
+        assertEquals(0, collection.getListingCacheHits());
+    }
+
+    @Test
+    void disabledCacheStillPrints() {
+        Collection collection = twoAlbums(0);
+        assertEquals(printByDate(twoAlbums(1 << 20)), printByDate(collection));
+        assertEquals(0, collection.getListingCacheMisses());
+    }
+}
@@ -0,0 +1,64 @@
+package album;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Positions of an ordered index, checked against a sorted set after random changes.
+ */
+class OrderedIndexTest {
+    private static List<Integer> walk(Iterator<Integer> iterator) {
+        List<Integer> items = new ArrayList<>();
+        iterator.forEachRemaining(items::add);
+        return items;
+    }
+
+    @Test
+    void iteratorAtSkipsToEveryOffset() {
+        Random random = new Random(7);
+        OrderedIndex<Integer> index = new OrderedIndex<>(Integer::compare);
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int round = 0; round < 2000; round++) {
+            Integer item = random.nextInt(500);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(item), index.remove(item));
+            } else {
+                assertEquals(expected.add(item), index.insert(item));
+            }
+            if (round % 100 == 0) {
+                List<Integer> sorted = new ArrayList<>(expected);
+                assertEquals(sorted.size(), index.size());
+                for (int offset = 0; offset <= sorted.size() + 1; offset++) {
+                    List<Integer> rest = sorted.subList(Math.min(offset, sorted.size()), sorted.size());
+                    assertEquals(rest, walk(index.iteratorAt(offset)), "offset " + offset);
+                }
+            }
+        }
+    }
+
+    @Test
+    void iteratorAtOfRebuiltIndex() {
+        Integer[] sorted = new Integer[100];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = 3 * i;
+        }
+        OrderedIndex<Integer> index = new OrderedIndex<>(Integer::compare);
+        index.rebuild(sorted, sorted.length);
+        assertEquals(List.of(sorted).subList(37, 100), walk(index.iteratorAt(37)));
+        assertEquals(List.of(297), walk(index.iteratorAt(99)));
+        assertFalse(index.iteratorAt(100).hasNext());
+    }
+
+    @Test
+    void iteratorAtOfEmptyIndex() {
+        assertFalse(new OrderedIndex<Integer>(Integer::compare).iteratorAt(0).hasNext());
+    }
+}
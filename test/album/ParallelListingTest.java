@@ -0,0 +1,71 @@
+package album;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Listings rendered in parallel batches, checked against rendering on one thread.
+ */
+class ParallelListingTest {
+    /**
+     * Builds a collection of a few thousand rated albums, so a listing spans
+     * several batches, with a last one only partly filled.
+     */
+    private static Collection rated(int albums) {
+        Collection collection = new Collection(0);
+        Random random = new Random(42);
+        Genre[] genres = Genre.values();
+        for (int i = 0; i < albums; i++) {
+            Artist artist = collection.artist("Artist " + random.nextInt(200), new Date(1943, 11, 7));
+            Album album = new Album("Title " + i, artist, genres[random.nextInt(genres.length)],
+                    new Date(1950 + random.nextInt(60), 1 + random.nextInt(12), 1 + random.nextInt(28)));
+            collection.add(album);
+            for (int votes = random.nextInt(4); votes > 0; votes--) {
+                collection.rate(album, 1 + random.nextInt(5));
+            }
+        }
+        return collection;
+    }
+
+    private static String inParallel(Iterator<Album> albums, int expected) {
+        StringWriter printed = new StringWriter();
+        PrintWriter out = new PrintWriter(printed);
+        assertEquals(expected, ParallelListing.print(albums, Album::appendTo, out));
+        out.flush();
+        return printed.toString();
+    }
+
+    private static String listing(Collection collection, String command) {
+        StringWriter printed = new StringWriter();
+        PrintWriter out = new PrintWriter(printed);
+        switch (command) {
+            case "PD" -> collection.printByDate(out);
+            case "PG" -> collection.printByGenre(out);
+            default -> collection.printByRating(out);
+        }
+        out.flush();
+        return printed.toString();
+    }
+
+    @Test
+    void sameOutputAsOneThread() {
+        int albums = 3 * 1024 + 17;
+        Collection collection = rated(albums);
+        // Below ParallelListing.MIN_ITEMS, so these listings are rendered on the calling thread
+        assertEquals(listing(collection, "PD"), inParallel(collection.albumsByDate(0), albums));
+        assertEquals(listing(collection, "PG"), inParallel(collection.albumsByGenre(0), albums));
+        assertEquals(listing(collection, "PR"), inParallel(collection.albumsByRating(0), albums));
+    }
+
+    @Test
+    void emptyListingPrintsNothing() {
+        assertEquals("", inParallel(Collections.emptyIterator(), 0));
+    }
+}
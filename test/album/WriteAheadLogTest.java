@@ -0,0 +1,207 @@
+package album;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Logged mutations surviving a restart, a rotation and a damaged tail.
+ */
+class WriteAheadLogTest {
+    private static Album album(Collection collection, String title, String artistName) {
+        return new Album(title, collection.artist(artistName, new Date(1943, 11, 7)), Genre.POP, new Date(1971, 6, 22));
+    }
+
+    @Test
+    void reopenReplaysLog(@TempDir Path dir) throws IOException {
+        try (CollectionStore store = CollectionStore.open(dir)) {
+            Collection collection = store.collection();
+            collection.add(album(collection, "Blue", "Joni Mitchell"));
+            collection.add(album(collection, "Court and Spark", "Joni Mitchell"));
+            collection.rate("Blue", "Joni Mitchell", 5);
+            collection.rate("Blue", "Joni Mitchell", 4);
+            collection.remove("Court and Spark", "Joni Mitchell");
+        }
+        try (CollectionStore store = CollectionStore.open(dir)) {
+            Collection collection = store.collection();
+            assertEquals(4.5, collection.getAlbum("Blue", "Joni Mitchell").avgRatings());
+            assertFalse(collection.contains("Court and Spark", "Joni Mitchell"));
+        }
+    }
+
+    @Test
+    void rotationKeepsEveryRecord(@TempDir Path dir) throws IOException {
+        Collection logged = new Collection();
+        try (WriteAheadLog log = new WriteAheadLog(dir.resolve("wal-1.log"))) {
+            logged.setLog(log);
+            logged.add(album(logged, "Blue", "Joni Mitchell"));
+            log.rotate(dir.resolve("wal-2.log"));
+            logged.add(album(logged, "Hejira", "Joni Mitchell"));
+            logged.rate("Blue", "Joni Mitchell", 3);
+        }
+        Collection replayed = new Collection();
+        assertEquals(1, WriteAheadLog.replay(dir.resolve("wal-1.log"), replayed));
+        assertEquals(2, WriteAheadLog.replay(dir.resolve("wal-2.log"), replayed));
+        assertTrue(replayed.contains("Hejira", "Joni Mitchell"));
+        assertEquals(3.0, replayed.getAlbum("Blue", "Joni Mitchell").avgRatings());
+    }
+
+    @Test
+    void backToBackRotationsKeepSegmentsApart(@TempDir Path dir) throws IOException {
+        Collection logged = new Collection();
+        try (WriteAheadLog log = new WriteAheadLog(dir.resolve("wal-1.log"))) {
+            logged.setLog(log);
+            logged.add(album(logged, "Blue", "Joni Mitchell"));
+            log.rotate(dir.resolve("wal-2.log"));
+            log.prepare(dir.resolve("wal-3.log"));
+            logged.add(album(logged, "Hejira", "Joni Mitchell"));
+            log.rotate();
+            logged.add(album(logged, "Court and Spark", "Joni Mitchell"));
+        }
+        for (int segment = 1; segment <= 3; segment++) {
+            assertEquals(1, WriteAheadLog.replay(dir.resolve("wal-" + segment + ".log"), new Collection()));
+        }
+    }
+
+    @Test
+    void compactionThenReopen(@TempDir Path dir) throws IOException {
+        try (CollectionStore store = CollectionStore.open(dir)) {
+            Collection collection = store.collection();
+            collection.add(album(collection, "Blue", "Joni Mitchell"));
+            store.compact();
+            collection.add(album(collection, "Hejira", "Joni Mitchell"));
+        }
+        try (CollectionStore store = CollectionStore.open(dir)) {
+            assertTrue(store.collection().contains("Blue", "Joni Mitchell"));
+            assertTrue(store.collection().contains("Hejira", "Joni Mitchell"));
+        }
+    }
+
+    @Test
+    void corruptRecordEndsReplay(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("wal-1.log");
+        long goodBytes = logThree(file);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 2] ^= 1; // Inside the last record's payload, so its CRC no longer matches
+        Files.write(file, bytes);
+        Collection replayed = new Collection();
+        assertEquals(2, WriteAheadLog.replay(file, replayed));
+        assertFalse(replayed.contains("Hejira", "Joni Mitchell"));
+        assertEquals(goodBytes, Files.size(file));
+    }
+
+    @Test
+    void tornRecordEndsReplay(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("wal-1.log");
+        long goodBytes = logThree(file);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+        assertEquals(2, WriteAheadLog.replay(file, new Collection()));
+        assertEquals(goodBytes, Files.size(file));
+    }
+
+    @Test
+    void unloggableAlbumIsNotAdded(@TempDir Path dir) throws IOException {
+        Collection logged = new Collection();
+        try (WriteAheadLog log = new WriteAheadLog(dir.resolve("wal-1.log"))) {
+            logged.setLog(log);
+            String title = "a".repeat(Short.MAX_VALUE + 1);
+            assertThrows(IllegalArgumentException.class, () -> logged.add(album(logged, title, "Joni Mitchell")));
+            assertFalse(logged.contains(title, "Joni Mitchell"));
+            assertTrue(logged.isEmpty());
+        }
+        assertEquals(0, Files.size(dir.resolve("wal-1.log")));
+    }
+
+    @Test
+    void appendAfterFailedWriteIsRefused() throws IOException {
+        Path full = Path.of("/dev/full"); // Every write fails for lack of space
+        assumeTrue(Files.isWritable(full));
+        Collection logged = new Collection();
+        WriteAheadLog log = new WriteAheadLog(full);
+        logged.setLog(log);
+        logged.add(album(logged, "Blue", "Joni Mitchell"));
+        assertThrows(IOException.class, log::sync);
+        assertThrows(UncheckedIOException.class, () -> logged.add(album(logged, "Hejira", "Joni Mitchell")));
+        assertFalse(logged.contains("Hejira", "Joni Mitchell"));
+        assertThrows(IOException.class, log::close);
+    }
+
+    @Test
+    void captureOfCutLeavesOutLaterChanges() {
+        Collection collection = new Collection();
+        collection.add(album(collection, "Blue", "Joni Mitchell"));
+        collection.rate("Blue", "Joni Mitchell", 5);
+        Collection.Cut cut = collection.cut();
+        collection.rate("Blue", "Joni Mitchell", 1);
+        collection.add(album(collection, "Hejira", "Joni Mitchell"));
+        collection.remove("Blue", "Joni Mitchell");
+        Album[] captured = collection.capture(cut);
+        assertEquals(1, captured.length);
+        assertEquals("Blue", captured[0].getTitle());
+        assertEquals(5.0, captured[0].avgRatings());
+    }
+
+    @Test
+    void compactionWhileChangingKeepsEveryChange(@TempDir Path dir) throws Exception {
+        int votes = 20000;
+        try (CollectionStore store = CollectionStore.open(dir)) {
+            Collection collection = store.collection();
+            collection.add(album(collection, "Blue", "Joni Mitchell"));
+            Thread changer = new Thread(() -> {
+                for (int i = 0; i < votes; i++) {
+                    collection.rate("Blue", "Joni Mitchell", 1 + i % 5);
+                    if (i % 100 == 0) {
+                        collection.add(album(collection, "Song " + i, "Joni Mitchell"));
+                    }
+                }
+            });
+            changer.start();
+            while (changer.isAlive()) {
+                store.compact(); // Does nothing while the compaction before is running
+            }
+            changer.join();
+        }
+        assertTrue(Files.list(dir).anyMatch(file -> file.getFileName().toString().startsWith("snapshot-")));
+        try (CollectionStore store = CollectionStore.open(dir)) {
+            Collection collection = store.collection();
+            for (int star = 1; star <= 5; star++) {
+                assertEquals(votes / 5, collection.getAlbum("Blue", "Joni Mitchell").getStarCount(star));
+            }
+            for (int i = 0; i < votes; i += 100) {
+                assertTrue(collection.contains("Song " + i, "Joni Mitchell"), "Song " + i);
+            }
+            assertEquals(1 + votes / 100, collection.capture().length);
+        }
+    }
+
+    /**
+     * Logs two albums, then a third one.
+     *
+     * @return Size of the segment holding only the first two records.
+     */
+    private static long logThree(Path file) throws IOException {
+        Collection logged = new Collection();
+        long goodBytes;
+        try (WriteAheadLog log = new WriteAheadLog(file)) {
+            logged.setLog(log);
+            logged.add(album(logged, "Blue", "Joni Mitchell"));
+            logged.add(album(logged, "Court and Spark", "Joni Mitchell"));
+            log.sync();
+            goodBytes = Files.size(file);
+            logged.add(album(logged, "Hejira", "Joni Mitchell"));
+        }
+        return goodBytes;
+    }
+}